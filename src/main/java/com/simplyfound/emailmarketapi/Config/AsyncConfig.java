@@ -0,0 +1,103 @@
+package com.simplyfound.emailmarketapi.Config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@Slf4j
+public class AsyncConfig implements AsyncConfigurer {
+
+    @Value("${app.async.max-concurrency:64}")
+    private int asyncMaxConcurrency;
+
+    @Value("${app.async.mvc.max-concurrency:64}")
+    private int mvcMaxConcurrency;
+
+    @Value("${app.async.background.pool-size:0}")
+    private int backgroundPoolSize;
+
+    @Value("${app.async.background.queue-capacity:1000}")
+    private int backgroundQueueCapacity;
+
+    @Value("${app.mail.pool.size:8}")
+    private int mailPoolSize;
+
+    // @Async work (newsletter sends, job recovery) is blocking I/O, so it runs on virtual threads
+    @Bean
+    public VirtualThreadTaskExecutor ioTaskExecutor() {
+        return new VirtualThreadTaskExecutor("async", asyncMaxConcurrency);
+    }
+
+    // Spring MVC async requests (streamed exports and subscriber dumps) get their own permits,
+    // so long downloads cannot hold up @Async senders and the other way round
+    @Bean
+    public VirtualThreadTaskExecutor applicationTaskExecutor() {
+        return new VirtualThreadTaskExecutor("mvc-async", mvcMaxConcurrency);
+    }
+
+    // SMTP send workers run on platform threads: SMTPTransport.sendMessage is synchronized and
+    // would pin a virtual thread's carrier for the whole SMTP round trip. One thread per pooled
+    // connection; workers of further concurrent sends queue until threads free up.
+    @Bean
+    public ThreadPoolTaskExecutor sendTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(mailPoolSize);
+        executor.setMaxPoolSize(mailPoolSize);
+        executor.setThreadNamePrefix("smtp-send-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    // Bounded platform pool for CPU-bound work such as rendering; callers run tasks themselves when it is full
+    @Bean
+    public ThreadPoolTaskExecutor backgroundTaskExecutor() {
+        int poolSize = backgroundPoolSize > 0 ? backgroundPoolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(backgroundQueueCapacity);
+        executor.setThreadNamePrefix("background-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    // Scheduler for @Scheduled jobs and scheduled-email timers, configured from spring.task.scheduling.*.
+    // Declared here because Boot backs off its own once any other scheduler bean exists.
+    @Bean
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    // Send job lease renewals get a thread of their own, so long-running scheduled jobs can never
+    // delay a heartbeat until another node takes over a lease this node still holds
+    @Bean
+    public ThreadPoolTaskScheduler leaseHeartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("lease-heartbeat-");
+        return scheduler;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return ioTaskExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (e, method, params) -> log.error("Async method {} failed: {}", method.getName(), e.getMessage(), e);
+    }
+}
@@ -1,16 +1,31 @@
 package com.simplyfound.emailmarketapi.Controllers;
 
-import com.simplyfound.emailmarketapi.Models.EmailAnalytics;
+import com.simplyfound.emailmarketapi.Models.NewsletterStats;
+import com.simplyfound.emailmarketapi.Models.RecipientActivity;
 import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsRepository;
-import com.simplyfound.emailmarketapi.Services.EmailService;
+import com.simplyfound.emailmarketapi.Services.AnalyticsExportService;
+import com.simplyfound.emailmarketapi.Services.ClickEventBuffer;
+import com.simplyfound.emailmarketapi.Services.NewsletterLinkService;
+import com.simplyfound.emailmarketapi.Services.NewsletterStatsService;
+import com.simplyfound.emailmarketapi.Services.OpenEventBuffer;
+import com.simplyfound.emailmarketapi.Services.OpenHistogramService;
+import com.simplyfound.emailmarketapi.Services.TrackingTokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,56 +36,100 @@ import java.util.Map;
 @Slf4j
 public class AnalyticsController {
 
-    private final EmailService emailService;
+    // 1x1 transparent PNG
+    private static final byte[] TRANSPARENT_PIXEL = new byte[]{
+            (byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A,
+            0x00, 0x00, 0x00, 0x0D, 0x49, 0x48, 0x44, 0x52,
+            0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01,
+            0x08, 0x06, 0x00, 0x00, 0x00, 0x1F, 0x15, (byte) 0xC4,
+            (byte) 0x89, 0x00, 0x00, 0x00, 0x0A, 0x49, 0x44, 0x41,
+            0x54, 0x78, (byte) 0x9C, 0x63, 0x00, 0x01, 0x00, 0x00,
+            0x05, 0x00, 0x01, 0x0D, 0x0A, 0x2D, (byte) 0xB4, 0x00,
+            0x00, 0x00, 0x00, 0x49, 0x45, 0x4E, 0x44, (byte) 0xAE,
+            0x42, 0x60, (byte) 0x82
+    };
+
+    private final OpenEventBuffer openEventBuffer;
+    private final TrackingTokenService trackingTokens;
     private final EmailAnalyticsRepository analyticsRepository;
+    private final NewsletterStatsService statsService;
+    private final AnalyticsExportService exportService;
+    private final OpenHistogramService histograms;
+    private final NewsletterLinkService linkService;
+    private final ClickEventBuffer clickEventBuffer;
+
+    @GetMapping("/t/{token}")
+    public ResponseEntity<byte[]> trackTokenOpen(@PathVariable String token) {
+        // Verified in memory; invalid tokens still get the pixel but are not recorded
+        trackingTokens.verify(token).ifPresentOrElse(
+                claims -> openEventBuffer.recordOpen(claims.newsletterId(), claims.analyticsId()),
+                () -> log.debug("Ignoring open with invalid tracking token"));
+        return pixelResponse();
+    }
 
+    // Links in newsletters sent before tracking tokens carry the raw address
     @GetMapping("/track/{newsletterId}/{email}")
     public ResponseEntity<byte[]> trackEmailOpen(
             @PathVariable Long newsletterId,
             @PathVariable String email) {
         try {
-            emailService.trackEmailOpen(newsletterId, email);
-            
-            // Return 1x1 transparent PNG
-            byte[] transparentPixel = new byte[]{
-                    (byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A,
-                    0x00, 0x00, 0x00, 0x0D, 0x49, 0x48, 0x44, 0x52,
-                    0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01,
-                    0x08, 0x06, 0x00, 0x00, 0x00, 0x1F, 0x15, (byte) 0xC4,
-                    (byte) 0x89, 0x00, 0x00, 0x00, 0x0A, 0x49, 0x44, 0x41,
-                    0x54, 0x78, (byte) 0x9C, 0x63, 0x00, 0x01, 0x00, 0x00,
-                    0x05, 0x00, 0x01, 0x0D, 0x0A, 0x2D, (byte) 0xB4, 0x00,
-                    0x00, 0x00, 0x00, 0x49, 0x45, 0x4E, 0x44, (byte) 0xAE,
-                    0x42, 0x60, (byte) 0x82
-            };
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setCacheControl("no-cache, no-store, must-revalidate");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(transparentPixel);
+            // Buffered and written in the background, so the pixel returns without touching the database
+            openEventBuffer.recordOpen(newsletterId, email);
+            return pixelResponse();
         } catch (Exception e) {
             log.error("Error tracking email open", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    // Tracked link: redirects to the stored URL from memory and records the click in the background.
+    // Only registered links redirect, so the endpoint cannot be used as an open redirect.
+    @GetMapping("/r/{linkCode}/{token}")
+    public ResponseEntity<Void> trackClick(@PathVariable String linkCode, @PathVariable String token) {
+        NewsletterLinkService.Link link = linkService.resolve(linkCode).orElse(null);
+        if (link == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // A click with an invalid or foreign token still redirects but is not tied to a recipient
+        Long analyticsId = trackingTokens.verify(token)
+                .filter(claims -> claims.newsletterId() == link.newsletterId())
+                .map(TrackingTokenService.Claims::analyticsId)
+                .orElse(null);
+        clickEventBuffer.recordClick(link.id(), link.newsletterId(), analyticsId);
+
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(link.url()))
+                .cacheControl(CacheControl.noStore())
+                .build();
+    }
+
+    private ResponseEntity<byte[]> pixelResponse() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setCacheControl("no-cache, no-store, must-revalidate");
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(TRANSPARENT_PIXEL);
+    }
+
     @GetMapping("/analytics/{newsletterId}")
     public ResponseEntity<Map<String, Object>> getNewsletterAnalytics(@PathVariable Long newsletterId) {
         try {
-            List<EmailAnalytics> analytics = analyticsRepository.findByNewsletterId(newsletterId);
-            long totalSent = analytics.size();
-            long totalOpened = analytics.stream().filter(EmailAnalytics::getOpened).count();
+            NewsletterStats stats = statsService.getStats(newsletterId);
+            long totalSent = stats.getSent();
+            long totalOpened = stats.getUniqueOpened();
             double openRate = totalSent > 0 ? (double) totalOpened / totalSent * 100 : 0;
 
             Map<String, Object> response = new HashMap<>();
             response.put("newsletterId", newsletterId);
             response.put("totalSent", totalSent);
             response.put("totalOpened", totalOpened);
+            response.put("totalOpens", stats.getOpened());
+            response.put("totalFailed", stats.getFailed());
             response.put("openRate", Math.round(openRate * 100.0) / 100.0);
-            response.put("analytics", analytics);
+            // Per-recipient rows of archived newsletters are no longer in the live table
+            response.put("archived", stats.getArchivedAt() != null);
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -81,15 +140,99 @@ public class AnalyticsController {
         }
     }
 
+    // Tracked links of a newsletter with their click counts
+    @GetMapping("/analytics/{newsletterId}/links")
+    public ResponseEntity<Map<String, Object>> getLinkClicks(@PathVariable Long newsletterId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("newsletterId", newsletterId);
+            response.put("links", linkService.getLinks(newsletterId));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error getting link clicks", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Per-recipient drill-down, one keyset page at a time: pass the returned nextAfter as after
+    @GetMapping("/analytics/{newsletterId}/recipients")
+    public ResponseEntity<Map<String, Object>> getRecipientActivity(
+            @PathVariable Long newsletterId,
+            @RequestParam(defaultValue = "0") Long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            int pageSize = Math.max(1, Math.min(limit, 1000));
+            List<RecipientActivity> page = analyticsRepository.findRecipientActivity(
+                    newsletterId, after, PageRequest.of(0, pageSize));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("newsletterId", newsletterId);
+            response.put("recipients", page);
+            response.put("nextAfter", page.size() == pageSize ? page.get(page.size() - 1).id() : null);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error getting recipient analytics", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Opens over time in minute, hour or day buckets; from/to are optional ISO date-times
+    @GetMapping("/analytics/{newsletterId}/opens")
+    public ResponseEntity<Map<String, Object>> getOpenHistogram(
+            @PathVariable Long newsletterId,
+            @RequestParam(defaultValue = "hour") String resolution,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            OpenHistogramService.Resolution bucketSize = OpenHistogramService.Resolution.valueOf(resolution.toUpperCase());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("newsletterId", newsletterId);
+            response.put("resolution", bucketSize.name().toLowerCase());
+            response.put("totalSent", statsService.getStats(newsletterId).getSent());
+            response.put("buckets", histograms.getHistogram(newsletterId, bucketSize, from, to));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error getting open histogram", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Full per-recipient export, streamed from a database cursor (format=ndjson or csv)
+    @GetMapping("/analytics/{newsletterId}/export")
+    public ResponseEntity<StreamingResponseBody> exportAnalytics(
+            @PathVariable Long newsletterId,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        AnalyticsExportService.Format exportFormat = "csv".equalsIgnoreCase(format)
+                ? AnalyticsExportService.Format.CSV
+                : AnalyticsExportService.Format.NDJSON;
+        String extension = exportFormat == AnalyticsExportService.Format.CSV ? "csv" : "ndjson";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(exportFormat == AnalyticsExportService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/x-ndjson"));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("newsletter-" + newsletterId + "-analytics." + extension)
+                .build());
+
+        StreamingResponseBody body = out -> exportService.export(newsletterId, exportFormat, out);
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
     @GetMapping("/analytics/dashboard")
     public ResponseEntity<Map<String, Object>> getDashboardAnalytics() {
         try {
             Map<String, Object> dashboard = new HashMap<>();
             
-            // Get all analytics
-            List<EmailAnalytics> allAnalytics = analyticsRepository.findAll();
-            long totalEmailsSent = allAnalytics.size();
-            long totalEmailsOpened = allAnalytics.stream().filter(EmailAnalytics::getOpened).count();
+            long totalEmailsSent = statsService.getTotalSent();
+            long totalEmailsOpened = statsService.getTotalUniqueOpened();
             double overallOpenRate = totalEmailsSent > 0 ? (double) totalEmailsOpened / totalEmailsSent * 100 : 0;
 
             dashboard.put("totalEmailsSent", totalEmailsSent);
@@ -104,6 +247,21 @@ public class AnalyticsController {
             return ResponseEntity.badRequest().body(response);
         }
     }
-}
-
 
+    // Recomputes newsletter_stats from the raw analytics rows, for one newsletter or all of them
+    @PostMapping("/analytics/stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildStats(@RequestParam(required = false) Long newsletterId) {
+        try {
+            int rebuilt = statsService.rebuild(newsletterId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("newslettersRebuilt", rebuilt);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error rebuilding newsletter stats", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+}
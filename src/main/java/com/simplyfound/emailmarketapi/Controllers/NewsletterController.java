@@ -1,11 +1,16 @@
 package com.simplyfound.emailmarketapi.Controllers;
 
 import com.simplyfound.emailmarketapi.Models.Newsletter;
+import com.simplyfound.emailmarketapi.Models.SendJob;
 import com.simplyfound.emailmarketapi.Services.EmailService;
 import com.simplyfound.emailmarketapi.Services.NewsletterService;
+import com.simplyfound.emailmarketapi.Services.NewsletterTemplateService;
+import com.simplyfound.emailmarketapi.Services.SendJobService;
+import com.simplyfound.emailmarketapi.Services.TrackingTokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,6 +27,9 @@ public class NewsletterController {
 
     private final NewsletterService newsletterService;
     private final EmailService emailService;
+    private final NewsletterTemplateService templateService;
+    private final SendJobService sendJobService;
+    private final TrackingTokenService trackingTokens;
 
     @PostMapping("/create")
     public ResponseEntity<Map<String, Object>> createNewsletter(
@@ -62,6 +70,11 @@ public class NewsletterController {
         }
     }
 
+    @GetMapping("/send-jobs/{newsletterId}")
+    public ResponseEntity<List<SendJob>> getSendJobs(@PathVariable Long newsletterId) {
+        return ResponseEntity.ok(sendJobService.getJobsForNewsletter(newsletterId));
+    }
+
     @PutMapping("/update/{id}")
     public ResponseEntity<Map<String, Object>> updateNewsletter(
             @PathVariable Long id,
@@ -108,6 +121,16 @@ public class NewsletterController {
         return ResponseEntity.ok(newsletters);
     }
 
+    @GetMapping("/preview/{id}")
+    public ResponseEntity<String> previewNewsletter(@PathVariable Long id) {
+        Newsletter newsletter = newsletterService.getNewsletterById(id);
+        // Analytics id 0 matches no row, so opening the preview is not tracked
+        String html = templateService.compilePreview(newsletter).render(trackingTokens.issue(id, 0));
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_HTML)
+                .body(html);
+    }
+
     @GetMapping("/analytics")
     public ResponseEntity<Map<String, Object>> getAnalytics() {
         Map<String, Object> analytics = new HashMap<>();
@@ -0,0 +1,66 @@
+package com.simplyfound.emailmarketapi.Controllers;
+
+import com.simplyfound.emailmarketapi.Config.VirtualThreadTaskExecutor;
+import com.simplyfound.emailmarketapi.Services.SendRateLimiter;
+import com.simplyfound.emailmarketapi.Services.SmtpTransportPool;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/sending")
+@RequiredArgsConstructor
+@Slf4j
+public class SendingController {
+
+    private final SendRateLimiter rateLimiter;
+    private final SmtpTransportPool transportPool;
+    private final VirtualThreadTaskExecutor ioTaskExecutor;
+    private final VirtualThreadTaskExecutor applicationTaskExecutor;
+    private final ThreadPoolTaskExecutor sendTaskExecutor;
+    private final ThreadPoolTaskExecutor backgroundTaskExecutor;
+
+    // Lists the limit slowest recipient domains
+    @GetMapping("/rate")
+    public ResponseEntity<Map<String, Object>> getSendRate(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(rateLimiter.getRates(Math.max(1, Math.min(limit, 1000))));
+    }
+
+    @GetMapping("/executors")
+    public ResponseEntity<Map<String, Object>> getExecutorStats() {
+        Map<String, Object> smtp = new LinkedHashMap<>();
+        smtp.put("poolSize", transportPool.getPoolSize());
+        smtp.put("open", transportPool.getOpenConnections());
+        smtp.put("active", transportPool.getActiveConnections());
+        smtp.put("idle", transportPool.getIdleConnections());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("async", ioTaskExecutor.getStats());
+        stats.put("mvcAsync", applicationTaskExecutor.getStats());
+        stats.put("send", platformPoolStats("smtp-send", sendTaskExecutor));
+        stats.put("background", platformPoolStats("background", backgroundTaskExecutor));
+        stats.put("smtpPool", smtp);
+        return ResponseEntity.ok(stats);
+    }
+
+    private Map<String, Object> platformPoolStats(String name, ThreadPoolTaskExecutor executor) {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("name", name);
+        pool.put("threads", "platform");
+        pool.put("poolSize", executor.getPoolSize());
+        pool.put("maxPoolSize", executor.getMaxPoolSize());
+        pool.put("active", executor.getActiveCount());
+        pool.put("queued", executor.getThreadPoolExecutor().getQueue().size());
+        pool.put("queueRemainingCapacity", executor.getThreadPoolExecutor().getQueue().remainingCapacity());
+        pool.put("completed", executor.getThreadPoolExecutor().getCompletedTaskCount());
+        return pool;
+    }
+}
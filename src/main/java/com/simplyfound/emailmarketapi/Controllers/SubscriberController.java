@@ -1,13 +1,19 @@
 package com.simplyfound.emailmarketapi.Controllers;
 
-import com.simplyfound.emailmarketapi.Models.Subscriber;
+import com.simplyfound.emailmarketapi.Models.SubscriberImport;
+import com.simplyfound.emailmarketapi.Models.SubscriberSummary;
+import com.simplyfound.emailmarketapi.Services.SubscriberImportService;
 import com.simplyfound.emailmarketapi.Services.SubscriberService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +25,7 @@ import java.util.Map;
 public class SubscriberController {
 
     private final SubscriberService subscriberService;
+    private final SubscriberImportService importService;
 
     @PostMapping("/subscribe")
     public ResponseEntity<Map<String, Object>> subscribe(@RequestBody Map<String, String> request) {
@@ -32,11 +39,16 @@ public class SubscriberController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            Subscriber subscriber = subscriberService.subscribe(email.trim());
+            SubscriberService.SubscribeResult result = subscriberService.subscribe(email);
             Map<String, Object> response = new HashMap<>();
+            if (result.outcome() == SubscriberService.SubscribeOutcome.ALREADY_SUBSCRIBED) {
+                response.put("success", false);
+                response.put("message", "Email is already subscribed");
+                return ResponseEntity.badRequest().body(response);
+            }
             response.put("success", true);
             response.put("message", "Successfully subscribed");
-            response.put("subscriber", subscriber);
+            response.put("subscriber", result.subscriber());
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             log.error("Error subscribing email", e);
@@ -53,11 +65,77 @@ public class SubscriberController {
         }
     }
 
+    // Bulk import streamed from the request body: CSV (an "email" header column, or the first
+    // column) or NDJSON ({"email": ...} per line). Format defaults from the content type.
+    @PostMapping("/import")
+    public ResponseEntity<Map<String, Object>> importSubscribers(
+            HttpServletRequest request,
+            @RequestParam(required = false) String format) {
+        String type = format != null ? format : String.valueOf(request.getContentType());
+        SubscriberImportService.Format importFormat = type.toLowerCase().contains("json")
+                ? SubscriberImportService.Format.NDJSON
+                : SubscriberImportService.Format.CSV;
+        try {
+            SubscriberImport result = importService.importSubscribers(request.getInputStream(), importFormat);
+            boolean completed = result.getStatus() == SubscriberImport.Status.COMPLETED;
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", completed);
+            response.put("import", result);
+            return completed ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            log.error("Error reading subscriber import", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Progress of running imports and the outcome of recent ones
+    @GetMapping("/imports")
+    public ResponseEntity<List<SubscriberImport>> getImports() {
+        return ResponseEntity.ok(importService.getImports());
+    }
+
+    @GetMapping("/imports/{id}")
+    public ResponseEntity<SubscriberImport> getImport(@PathVariable String id) {
+        return importService.getImport(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/unsubscribe")
     public ResponseEntity<Map<String, Object>> unsubscribe(@RequestParam String email) {
         try {
-            subscriberService.unsubscribe(email);
             Map<String, Object> response = new HashMap<>();
+            if (!subscriberService.unsubscribe(email)) {
+                response.put("success", false);
+                response.put("message", "Subscriber not found");
+                return ResponseEntity.badRequest().body(response);
+            }
+            response.put("success", true);
+            response.put("message", "Successfully unsubscribed");
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @GetMapping("/unsubscribe/{token}")
+    public ResponseEntity<Map<String, Object>> unsubscribeByToken(@PathVariable String token) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            if (!subscriberService.unsubscribeByToken(token)) {
+                // Unsubscribing must keep working for old links, so fall back to the email form
+                response.put("success", false);
+                response.put("emailRequired", true);
+                response.put("unsubscribeUrl", "/api/subscribers/unsubscribe?email=");
+                response.put("message", "This link has expired. Enter your email address to unsubscribe.");
+                return ResponseEntity.ok(response);
+            }
             response.put("success", true);
             response.put("message", "Successfully unsubscribed");
             return ResponseEntity.ok(response);
@@ -69,10 +147,38 @@ public class SubscriberController {
         }
     }
 
+    // One keyset page of subscribers: pass the returned nextAfter as after. Optional filters are
+    // subscribed=true|false and q, an email prefix.
     @GetMapping("/all")
-    public ResponseEntity<List<Subscriber>> getAllSubscribers() {
-        List<Subscriber> subscribers = subscriberService.getAllSubscribers();
-        return ResponseEntity.ok(subscribers);
+    public ResponseEntity<Map<String, Object>> getAllSubscribers(
+            @RequestParam(defaultValue = "0") Long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Boolean subscribed,
+            @RequestParam(required = false) String q) {
+        try {
+            int pageSize = Math.max(1, Math.min(limit, 1000));
+            List<SubscriberSummary> page = subscriberService.getSubscriberPage(after, subscribed, q, pageSize);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("subscribers", page);
+            response.put("nextAfter", page.size() == pageSize ? page.get(page.size() - 1).id() : null);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error listing subscribers", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Full dump as a single JSON array, streamed from a database cursor in constant memory
+    @GetMapping(value = "/all", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllSubscribers(
+            @RequestParam(required = false) Boolean subscribed,
+            @RequestParam(required = false) String q) {
+        StreamingResponseBody body = out -> subscriberService.streamSubscribers(subscribed, q, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @GetMapping("/count")
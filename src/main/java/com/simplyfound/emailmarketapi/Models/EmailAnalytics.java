@@ -14,8 +14,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class EmailAnalytics {
 
+    // Sequence ids (pre-allocated in blocks) let Hibernate batch the inserts made during a send
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_analytics_seq")
+    @SequenceGenerator(name = "email_analytics_seq", sequenceName = "email_analytics_seq", allocationSize = 200)
     private Long id;
 
     @Column(name = "newsletter_id", nullable = false)
@@ -29,6 +31,24 @@ public class EmailAnalytics {
 
     @Column(name = "opened_at")
     private LocalDateTime openedAt;
+
+    // Pixel hits written to this row. Repeats caught by the duplicate-open filter are only counted
+    // in newsletter_stats and the open histogram
+    @Column(name = "open_count", nullable = false)
+    private Integer openCount = 0;
+
+    @Column(name = "send_job_id")
+    private Long sendJobId;
+
+    // Rows are written as PENDING before a send and act as the job's outbox. SUPPRESSED rows were
+    // skipped because the recipient unsubscribed after the job enqueued them
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DeliveryStatus status = DeliveryStatus.SENT;
+
+    public enum DeliveryStatus {
+        PENDING, SENT, FAILED, SUPPRESSED
+    }
 }
 
 
@@ -0,0 +1,45 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A link in a newsletter's content; sent emails point at /api/r/{code} and are redirected to url
+@Entity
+@Table(name = "newsletter_links")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewsletterLink {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "newsletter_id", nullable = false)
+    private Long newsletterId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String url;
+
+    @Column(name = "click_count", nullable = false)
+    private Long clickCount = 0L;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Short code used in the redirect URL
+    public String getCode() {
+        return Long.toString(id, 36);
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Opens of one newsletter within one minute, the finest resolution of the open histograms
+@Entity
+@Table(name = "newsletter_open_buckets")
+@IdClass(NewsletterOpenBucket.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewsletterOpenBucket {
+
+    @Id
+    @Column(name = "newsletter_id")
+    private Long newsletterId;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private Long opens = 0L;
+
+    @Column(name = "unique_opens", nullable = false)
+    private Long uniqueOpens = 0L;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long newsletterId;
+        private LocalDateTime bucketStart;
+    }
+}
@@ -0,0 +1,41 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Per-newsletter analytics totals, incremented as deliveries and opens are recorded
+@Entity
+@Table(name = "newsletter_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewsletterStats {
+
+    @Id
+    @Column(name = "newsletter_id")
+    private Long newsletterId;
+
+    @Column(nullable = false)
+    private Long sent = 0L;
+
+    @Column(nullable = false)
+    private Long failed = 0L;
+
+    // Every recorded pixel hit, including repeat opens by the same recipient
+    @Column(nullable = false)
+    private Long opened = 0L;
+
+    @Column(name = "unique_opened", nullable = false)
+    private Long uniqueOpened = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Set when the newsletter's analytics rows were rolled up and their partition archived
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
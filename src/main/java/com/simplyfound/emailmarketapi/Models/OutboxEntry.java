@@ -0,0 +1,5 @@
+package com.simplyfound.emailmarketapi.Models;
+
+// A pending outbox row (EmailAnalytics id) and the address it is addressed to
+public record OutboxEntry(Long id, String email) {
+}
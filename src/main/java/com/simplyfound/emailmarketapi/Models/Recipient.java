@@ -0,0 +1,5 @@
+package com.simplyfound.emailmarketapi.Models;
+
+// Lightweight send-time projection of an active Subscriber
+public record Recipient(Long id, String email) {
+}
@@ -0,0 +1,8 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import java.time.LocalDateTime;
+
+// Per-recipient delivery and open state of one newsletter, as returned by the analytics drill-down and export
+public record RecipientActivity(Long id, String recipientEmail, EmailAnalytics.DeliveryStatus status,
+                                Boolean opened, LocalDateTime openedAt, Integer openCount) {
+}
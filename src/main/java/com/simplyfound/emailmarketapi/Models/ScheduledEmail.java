@@ -33,6 +33,16 @@ public class ScheduledEmail {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    @Column(name = "send_job_id")
+    private Long sendJobId;
+
+    // Node currently dispatching this email; the claim lapses at lease_expires_at
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
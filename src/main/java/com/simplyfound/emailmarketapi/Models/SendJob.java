@@ -0,0 +1,68 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "send_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "newsletter_id", nullable = false)
+    private Long newsletterId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.RUNNING;
+
+    // Highest subscriber id already written to the outbox
+    @Column(name = "last_subscriber_id", nullable = false)
+    private Long lastSubscriberId = 0L;
+
+    @Column(name = "enqueue_complete", nullable = false)
+    private Boolean enqueueComplete = false;
+
+    @Column(name = "sent_count", nullable = false)
+    private Integer sentCount = 0;
+
+    @Column(name = "failed_count", nullable = false)
+    private Integer failedCount = 0;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Node running this job; it renews the lease while working and another node takes over once it lapses
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        updatedAt = createdAt;
+    }
+}
@@ -18,7 +18,8 @@ public class Subscriber {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(unique = true, nullable = false)
+    // Unique case-insensitively through idx_subscribers_email_lower (V6)
+    @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
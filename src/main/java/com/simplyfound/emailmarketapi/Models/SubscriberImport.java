@@ -0,0 +1,53 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress and outcome of a bulk subscriber import; readable while the import is running
+@Getter
+public class SubscriberImport {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    public record Reject(long line, String value, String reason) {
+    }
+
+    private final String id;
+    private final String format;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile String error;
+
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final AtomicLong subscribed = new AtomicLong();
+    private final AtomicLong resubscribed = new AtomicLong();
+    private final AtomicLong alreadySubscribed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // The first rejects in file order; rejected holds the full count
+    private final List<Reject> rejects = new CopyOnWriteArrayList<>();
+
+    public SubscriberImport(String id, String format) {
+        this.id = id;
+        this.format = format;
+    }
+
+    public void complete() {
+        finishedAt = LocalDateTime.now();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finishedAt = LocalDateTime.now();
+        status = Status.FAILED;
+    }
+}
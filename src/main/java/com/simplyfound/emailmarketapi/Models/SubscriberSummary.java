@@ -0,0 +1,8 @@
+package com.simplyfound.emailmarketapi.Models;
+
+import java.time.LocalDateTime;
+
+// Subscriber row as listed by the admin endpoints, read without loading entities
+public record SubscriberSummary(Long id, String email, Boolean subscribed,
+                                LocalDateTime subscribedAt, LocalDateTime unsubscribedAt) {
+}
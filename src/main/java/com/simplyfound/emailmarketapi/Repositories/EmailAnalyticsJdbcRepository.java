@@ -0,0 +1,160 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import com.simplyfound.emailmarketapi.Models.EmailAnalytics;
+import com.simplyfound.emailmarketapi.Models.NewsletterOpenBucket;
+import com.simplyfound.emailmarketapi.Models.RecipientActivity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Set-based statements on email_analytics that JPQL cannot express (array parameters, unnest, CTEs)
+@Repository
+@RequiredArgsConstructor
+public class EmailAnalyticsJdbcRepository {
+
+    private static final String RECORD_OPENS_BY_ID =
+            recordOpens("SELECT * FROM unnest(?, ?, ?, ?) AS k(id, newsletter_id, opened_at, hits)");
+
+    // Legacy pixel links identify the row by newsletter and address
+    private static final String RECORD_OPENS_BY_RECIPIENT =
+            recordOpens("SELECT a.id, a.newsletter_id, k.opened_at, k.hits " +
+                        "FROM unnest(?, ?, ?, ?) AS k(newsletter_id, recipient_email, opened_at, hits) " +
+                        "JOIN email_analytics a ON a.newsletter_id = k.newsletter_id " +
+                        "AND a.recipient_email = k.recipient_email");
+
+    // Repeat opens of rows already marked opened only add to the newsletter totals and histogram
+    private static final String RECORD_REPEAT_OPENS =
+            "WITH v AS (SELECT * FROM unnest(?, ?, ?) AS v(newsletter_id, bucket_start, hits)), " +
+            "stats AS (" +
+            "  INSERT INTO newsletter_stats (newsletter_id, sent, failed, opened, unique_opened, updated_at) " +
+            "  SELECT newsletter_id, 0, 0, SUM(hits), 0, now() FROM v GROUP BY newsletter_id " +
+            "  ON CONFLICT (newsletter_id) DO UPDATE SET opened = newsletter_stats.opened + EXCLUDED.opened, " +
+            "  updated_at = now()), " +
+            "histogram AS (" +
+            "  INSERT INTO newsletter_open_buckets (newsletter_id, bucket_start, opens, unique_opens) " +
+            "  SELECT newsletter_id, bucket_start, hits, 0 FROM v " +
+            "  ON CONFLICT (newsletter_id, bucket_start) DO UPDATE SET " +
+            "  opens = newsletter_open_buckets.opens + EXCLUDED.opens " +
+            "  RETURNING newsletter_id, bucket_start, opens, unique_opens) " +
+            "SELECT * FROM histogram";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Lowest and highest analytics id of a newsletter, or null if it has no rows
+    public long[] findIdRange(Long newsletterId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT MIN(id), MAX(id) FROM email_analytics WHERE newsletter_id = ?",
+                (rs, rowNum) -> rs.getObject(1) == null ? null : new long[]{rs.getLong(1), rs.getLong(2)},
+                newsletterId);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachOpenedId(Long newsletterId, LongConsumer consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT id FROM email_analytics WHERE newsletter_id = ? AND opened = true");
+            ps.setFetchSize(10_000);
+            ps.setLong(1, newsletterId);
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getLong(1));
+        });
+    }
+
+    // Streams a newsletter's rows in id order through a server-side cursor. PostgreSQL only uses
+    // the fetch size inside a transaction, so callers must run in one.
+    public void streamRecipientActivity(Long newsletterId, int fetchSize, Consumer<RecipientActivity> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT id, recipient_email, status, opened, opened_at, open_count FROM email_analytics " +
+                    "WHERE newsletter_id = ? ORDER BY id");
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, newsletterId);
+            return ps;
+        }, rs -> {
+            Timestamp openedAt = rs.getTimestamp("opened_at");
+            String status = rs.getString("status");
+            consumer.accept(new RecipientActivity(
+                    rs.getLong("id"),
+                    rs.getString("recipient_email"),
+                    status != null ? EmailAnalytics.DeliveryStatus.valueOf(status) : null,
+                    rs.getBoolean("opened"),
+                    openedAt != null ? openedAt.toLocalDateTime() : null,
+                    rs.getInt("open_count")));
+        });
+    }
+
+    public List<NewsletterOpenBucket> recordOpensByIds(Long[] ids, Long[] newsletterIds, Timestamp[] openedAt,
+                                                       Integer[] hits) {
+        return jdbcTemplate.query(RECORD_OPENS_BY_ID, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", newsletterIds));
+            ps.setArray(3, ps.getConnection().createArrayOf("timestamp", openedAt));
+            ps.setArray(4, ps.getConnection().createArrayOf("integer", hits));
+        }, EmailAnalyticsJdbcRepository::mapBucket);
+    }
+
+    public List<NewsletterOpenBucket> recordRepeatOpens(Long[] newsletterIds, Timestamp[] bucketStarts, Long[] hits) {
+        return jdbcTemplate.query(RECORD_REPEAT_OPENS, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", newsletterIds));
+            ps.setArray(2, ps.getConnection().createArrayOf("timestamp", bucketStarts));
+            ps.setArray(3, ps.getConnection().createArrayOf("bigint", hits));
+        }, EmailAnalyticsJdbcRepository::mapBucket);
+    }
+
+    public List<NewsletterOpenBucket> recordOpensByRecipient(Long[] newsletterIds, String[] recipientEmails,
+                                                             Timestamp[] openedAt, Integer[] hits) {
+        return jdbcTemplate.query(RECORD_OPENS_BY_RECIPIENT, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", newsletterIds));
+            ps.setArray(2, ps.getConnection().createArrayOf("varchar", recipientEmails));
+            ps.setArray(3, ps.getConnection().createArrayOf("timestamp", openedAt));
+            ps.setArray(4, ps.getConnection().createArrayOf("integer", hits));
+        }, EmailAnalyticsJdbcRepository::mapBucket);
+    }
+
+    // Applies a batch of opens in one statement: updates the rows, adds the totals to newsletter_stats
+    // and the per-minute counts to newsletter_open_buckets, and returns the touched buckets' new totals.
+    // The first open of a row keeps its time and counts as unique; every hit counts as an open.
+    // Rows are matched on newsletter_id as well so each lookup is pruned to one partition.
+    private static String recordOpens(String batch) {
+        return "WITH v AS (" + batch + "), " +
+               "prior AS (SELECT a.id, a.opened FROM email_analytics a " +
+               "  JOIN v ON a.newsletter_id = v.newsletter_id AND a.id = v.id FOR UPDATE OF a), " +
+               "updated AS (" +
+               "  UPDATE email_analytics a SET opened = true, opened_at = COALESCE(a.opened_at, v.opened_at), " +
+               "  open_count = a.open_count + v.hits " +
+               "  FROM v JOIN prior ON prior.id = v.id WHERE a.newsletter_id = v.newsletter_id AND a.id = v.id " +
+               "  RETURNING a.newsletter_id, date_trunc('minute', v.opened_at) AS bucket_start, v.hits, " +
+               "  NOT prior.opened AS first_open), " +
+               "buckets AS (" +
+               "  SELECT newsletter_id, bucket_start, SUM(hits) AS opens, " +
+               "  COUNT(*) FILTER (WHERE first_open) AS unique_opens FROM updated GROUP BY newsletter_id, bucket_start), " +
+               "stats AS (" +
+               "  INSERT INTO newsletter_stats (newsletter_id, sent, failed, opened, unique_opened, updated_at) " +
+               "  SELECT newsletter_id, 0, 0, SUM(opens), SUM(unique_opens), now() FROM buckets GROUP BY newsletter_id " +
+               "  ON CONFLICT (newsletter_id) DO UPDATE SET opened = newsletter_stats.opened + EXCLUDED.opened, " +
+               "  unique_opened = newsletter_stats.unique_opened + EXCLUDED.unique_opened, updated_at = now()), " +
+               "histogram AS (" +
+               "  INSERT INTO newsletter_open_buckets (newsletter_id, bucket_start, opens, unique_opens) " +
+               "  SELECT newsletter_id, bucket_start, opens, unique_opens FROM buckets " +
+               "  ON CONFLICT (newsletter_id, bucket_start) DO UPDATE SET " +
+               "  opens = newsletter_open_buckets.opens + EXCLUDED.opens, " +
+               "  unique_opens = newsletter_open_buckets.unique_opens + EXCLUDED.unique_opens " +
+               "  RETURNING newsletter_id, bucket_start, opens, unique_opens) " +
+               "SELECT * FROM histogram";
+    }
+
+    private static NewsletterOpenBucket mapBucket(ResultSet rs, int rowNum) throws SQLException {
+        return new NewsletterOpenBucket(rs.getLong("newsletter_id"), rs.getTimestamp("bucket_start").toLocalDateTime(),
+                rs.getLong("opens"), rs.getLong("unique_opens"));
+    }
+}
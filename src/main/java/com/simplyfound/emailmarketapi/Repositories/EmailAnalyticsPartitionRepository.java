@@ -0,0 +1,127 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Partition DDL for email_analytics, which is range-partitioned on newsletter_id
+@Repository
+@RequiredArgsConstructor
+public class EmailAnalyticsPartitionRepository {
+
+    private static final Pattern RANGE_BOUND =
+            Pattern.compile("FROM \\('?(-?\\d+)'?\\) TO \\('?(-?\\d+)'?\\)");
+
+    // Serialises partition creation and archiving across nodes
+    private static final long MAINTENANCE_LOCK_KEY = 0x656d61696c5f6172L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Attached range partitions ordered by lower bound; the default partition is left out
+    public List<Partition> findPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'email_analytics'::regclass",
+                rs -> {
+                    Matcher bound = RANGE_BOUND.matcher(rs.getString(2));
+                    if (bound.find()) {
+                        partitions.add(new Partition(rs.getString(1),
+                                Long.parseLong(bound.group(1)), Long.parseLong(bound.group(2))));
+                    }
+                });
+        partitions.sort(Comparator.comparingLong(Partition::fromId));
+        return partitions;
+    }
+
+    // Highest newsletter id handed out so far, including ids taken by rolled-back inserts
+    public long findNewsletterIdHighWater() {
+        return jdbcTemplate.queryForObject(
+                "SELECT GREATEST(COALESCE(MAX(id), 0), " +
+                "pg_sequence_last_value(pg_get_serial_sequence('newsletters', 'id')::regclass)) FROM newsletters",
+                Long.class);
+    }
+
+    // Creates the partition for [fromId, toId) and returns the number of rows moved into it.
+    // PostgreSQL refuses to create a partition whose rows already sit in the default partition,
+    // so such rows are moved into a fresh table that is then attached.
+    @Transactional
+    public long createPartition(long fromId, long toId) {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + MAINTENANCE_LOCK_KEY + ")");
+        String name = "email_analytics_p" + fromId;
+        if (findPartitions().stream().anyMatch(p -> p.name().equals(name))) {
+            return 0;
+        }
+        boolean stranded = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM email_analytics_default WHERE newsletter_id >= ? AND newsletter_id < ?)",
+                Boolean.class, fromId, toId));
+        if (!stranded) {
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE %s PARTITION OF email_analytics FOR VALUES FROM (%d) TO (%d)", name, fromId, toId));
+            return 0;
+        }
+
+        // Blocks writes to the default partition until the moved rows are attached
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+        jdbcTemplate.execute("LOCK TABLE email_analytics_default IN EXCLUSIVE MODE");
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE email_analytics INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        long moved = jdbcTemplate.update(
+                "WITH moved AS (DELETE FROM email_analytics_default WHERE newsletter_id >= ? AND newsletter_id < ? " +
+                "RETURNING *) INSERT INTO " + name + " SELECT * FROM moved",
+                fromId, toId);
+        // Attaching builds the partitioned indexes on the new table
+        jdbcTemplate.execute(String.format(
+                "ALTER TABLE email_analytics ATTACH PARTITION %s FOR VALUES FROM (%d) TO (%d)", name, fromId, toId));
+        return moved;
+    }
+
+    // A range can be archived once no newsletter in it was created, sent or scheduled since the cutoff
+    public boolean isInactiveSince(long fromId, long toId, LocalDateTime cutoff) {
+        Timestamp since = Timestamp.valueOf(cutoff);
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM newsletters WHERE id >= ? AND id < ? " +
+                "  AND GREATEST(created_at, sent_at) >= ?) " +
+                "AND NOT EXISTS (SELECT 1 FROM send_jobs WHERE newsletter_id >= ? AND newsletter_id < ? " +
+                "  AND (status = 'RUNNING' OR GREATEST(created_at, updated_at, completed_at) >= ?)) " +
+                "AND NOT EXISTS (SELECT 1 FROM scheduled_emails WHERE newsletter_id >= ? AND newsletter_id < ? " +
+                "  AND sent = false)",
+                Boolean.class, fromId, toId, since, fromId, toId, since, fromId, toId));
+    }
+
+    // Detaches the partition into the analytics_archive schema, or drops it. Returns false if
+    // another node holds the maintenance lock or the partition is no longer attached.
+    @Transactional
+    public boolean archive(Partition partition, boolean drop) {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked) || findPartitions().stream().noneMatch(p -> p.name().equals(partition.name()))) {
+            return false;
+        }
+        long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition.name(), Long.class);
+
+        // Detaching locks the whole table; give up rather than queue behind long transactions
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+        jdbcTemplate.execute("ALTER TABLE email_analytics DETACH PARTITION " + partition.name());
+        if (drop) {
+            jdbcTemplate.execute("DROP TABLE " + partition.name());
+        } else {
+            jdbcTemplate.execute("ALTER TABLE " + partition.name() + " SET SCHEMA analytics_archive");
+        }
+        jdbcTemplate.update(
+                "INSERT INTO email_analytics_archives (partition_name, newsletter_id_from, newsletter_id_to, " +
+                "row_count, archived_at, dropped) VALUES (?, ?, ?, ?, now(), ?)",
+                partition.name(), partition.fromId(), partition.toId(), rows, drop);
+        return true;
+    }
+
+    public record Partition(String name, long fromId, long toId) {
+    }
+}
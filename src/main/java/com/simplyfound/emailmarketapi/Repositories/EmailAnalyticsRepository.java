@@ -1,8 +1,13 @@
 package com.simplyfound.emailmarketapi.Repositories;
 
 import com.simplyfound.emailmarketapi.Models.EmailAnalytics;
+import com.simplyfound.emailmarketapi.Models.OutboxEntry;
+import com.simplyfound.emailmarketapi.Models.RecipientActivity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,11 +17,40 @@ import java.util.Optional;
 public interface EmailAnalyticsRepository extends JpaRepository<EmailAnalytics, Long> {
     List<EmailAnalytics> findByNewsletterId(Long newsletterId);
     Optional<EmailAnalytics> findByNewsletterIdAndRecipientEmail(Long newsletterId, String email);
+    Optional<EmailAnalytics> findByIdAndNewsletterId(Long id, Long newsletterId);
     long countByNewsletterId(Long newsletterId);
     long countByNewsletterIdAndOpenedTrue(Long newsletterId);
     
     @Query("SELECT COUNT(DISTINCT ea.newsletterId) FROM EmailAnalytics ea")
     long countDistinctNewsletters();
+
+    // The table is partitioned by newsletter id; statements that know it pass it so only one
+    // partition is touched
+
+    @Query("SELECT new com.simplyfound.emailmarketapi.Models.OutboxEntry(ea.id, ea.recipientEmail) FROM EmailAnalytics ea " +
+           "WHERE ea.newsletterId = :newsletterId AND ea.sendJobId = :jobId AND ea.status = :status " +
+           "AND ea.id > :afterId ORDER BY ea.id")
+    List<OutboxEntry> findOutboxEntries(@Param("newsletterId") Long newsletterId, @Param("jobId") Long jobId,
+                                        @Param("status") EmailAnalytics.DeliveryStatus status,
+                                        @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.simplyfound.emailmarketapi.Models.RecipientActivity(ea.id, ea.recipientEmail, ea.status, " +
+           "ea.opened, ea.openedAt, ea.openCount) FROM EmailAnalytics ea " +
+           "WHERE ea.newsletterId = :newsletterId AND ea.id > :afterId ORDER BY ea.id")
+    List<RecipientActivity> findRecipientActivity(@Param("newsletterId") Long newsletterId, @Param("afterId") Long afterId,
+                                                  Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE EmailAnalytics ea SET ea.status = :status WHERE ea.newsletterId = :newsletterId AND ea.id IN :ids")
+    int updateStatus(@Param("newsletterId") Long newsletterId, @Param("ids") List<Long> ids,
+                     @Param("status") EmailAnalytics.DeliveryStatus status);
+
+    @Modifying
+    @Query("UPDATE EmailAnalytics ea SET ea.status = :to " +
+           "WHERE ea.newsletterId = :newsletterId AND ea.sendJobId = :jobId AND ea.status = :from")
+    int updateStatusForJob(@Param("newsletterId") Long newsletterId, @Param("jobId") Long jobId,
+                           @Param("from") EmailAnalytics.DeliveryStatus from,
+                           @Param("to") EmailAnalytics.DeliveryStatus to);
 }
 
 
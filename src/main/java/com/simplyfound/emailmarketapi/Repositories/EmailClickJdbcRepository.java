@@ -0,0 +1,33 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+
+// Batched click writes: the click rows and the per-link counters in one statement
+@Repository
+@RequiredArgsConstructor
+public class EmailClickJdbcRepository {
+
+    private static final String RECORD_CLICKS =
+            "WITH v AS (SELECT * FROM unnest(?, ?, ?, ?) AS v(link_id, newsletter_id, analytics_id, clicked_at)), " +
+            "inserted AS (" +
+            "  INSERT INTO email_clicks (newsletter_id, link_id, analytics_id, clicked_at) " +
+            "  SELECT newsletter_id, link_id, analytics_id, clicked_at FROM v) " +
+            "UPDATE newsletter_links l SET click_count = l.click_count + c.clicks " +
+            "FROM (SELECT link_id, COUNT(*) AS clicks FROM v GROUP BY link_id) c WHERE l.id = c.link_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // analyticsIds may contain nulls for clicks whose recipient token did not verify
+    public void recordClicks(Long[] linkIds, Long[] newsletterIds, Long[] analyticsIds, Timestamp[] clickedAt) {
+        jdbcTemplate.update(RECORD_CLICKS, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", linkIds));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", newsletterIds));
+            ps.setArray(3, ps.getConnection().createArrayOf("bigint", analyticsIds));
+            ps.setArray(4, ps.getConnection().createArrayOf("timestamp", clickedAt));
+        });
+    }
+}
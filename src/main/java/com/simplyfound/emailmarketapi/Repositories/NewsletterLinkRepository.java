@@ -0,0 +1,21 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import com.simplyfound.emailmarketapi.Models.NewsletterLink;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NewsletterLinkRepository extends JpaRepository<NewsletterLink, Long> {
+    List<NewsletterLink> findByNewsletterIdOrderById(Long newsletterId);
+
+    // Returns the id of the newsletter's link to url, creating it if needed
+    @Query(value = "INSERT INTO newsletter_links (newsletter_id, url, click_count, created_at) " +
+                   "VALUES (:newsletterId, :url, 0, now()) " +
+                   "ON CONFLICT (newsletter_id, url) DO UPDATE SET url = EXCLUDED.url RETURNING id",
+           nativeQuery = true)
+    Long upsertLink(@Param("newsletterId") Long newsletterId, @Param("url") String url);
+}
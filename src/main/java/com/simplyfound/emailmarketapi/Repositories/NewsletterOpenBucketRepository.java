@@ -0,0 +1,23 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import com.simplyfound.emailmarketapi.Models.NewsletterOpenBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NewsletterOpenBucketRepository extends JpaRepository<NewsletterOpenBucket, NewsletterOpenBucket.Key> {
+    List<NewsletterOpenBucket> findByNewsletterIdOrderByBucketStart(Long newsletterId);
+
+    // Seeds the buckets from first-open times recorded before the histograms existed
+    @Modifying
+    @Query(value = "INSERT INTO newsletter_open_buckets (newsletter_id, bucket_start, opens, unique_opens) " +
+                   "SELECT newsletter_id, date_trunc('minute', opened_at), COUNT(*), COUNT(*) " +
+                   "FROM email_analytics WHERE opened_at IS NOT NULL GROUP BY 1, 2 " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int seedFromAnalytics();
+}
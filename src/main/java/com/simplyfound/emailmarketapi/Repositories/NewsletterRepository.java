@@ -2,6 +2,7 @@ package com.simplyfound.emailmarketapi.Repositories;
 
 import com.simplyfound.emailmarketapi.Models.Newsletter;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,6 +10,9 @@ import java.util.List;
 @Repository
 public interface NewsletterRepository extends JpaRepository<Newsletter, Long> {
     List<Newsletter> findAllByOrderByCreatedAtDesc();
+
+    @Query("SELECT COALESCE(SUM(n.totalRecipients), 0) FROM Newsletter n WHERE n.sentAt IS NOT NULL")
+    long sumSentRecipients();
 }
 
 
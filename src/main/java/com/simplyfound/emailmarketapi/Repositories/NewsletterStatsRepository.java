@@ -0,0 +1,63 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import com.simplyfound.emailmarketapi.Models.NewsletterStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NewsletterStatsRepository extends JpaRepository<NewsletterStats, Long> {
+
+    @Query("SELECT COALESCE(SUM(s.sent), 0) FROM NewsletterStats s")
+    long sumSent();
+
+    @Query("SELECT COALESCE(SUM(s.uniqueOpened), 0) FROM NewsletterStats s")
+    long sumUniqueOpened();
+
+    @Modifying
+    @Query(value = "INSERT INTO newsletter_stats (newsletter_id, sent, failed, opened, unique_opened, updated_at) " +
+                   "VALUES (:newsletterId, :sent, :failed, 0, 0, now()) " +
+                   "ON CONFLICT (newsletter_id) DO UPDATE SET sent = newsletter_stats.sent + EXCLUDED.sent, " +
+                   "failed = newsletter_stats.failed + EXCLUDED.failed, updated_at = now()",
+           nativeQuery = true)
+    int addDeliveries(@Param("newsletterId") Long newsletterId, @Param("sent") long sent, @Param("failed") long failed);
+
+    // Recomputes the totals from email_analytics. The table lock holds back concurrent increments
+    // until the rebuild commits, so none are lost or counted twice.
+    @Modifying
+    @Query(value = "LOCK TABLE newsletter_stats IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    @Modifying
+    @Query(value = "DELETE FROM newsletter_stats s WHERE s.archived_at IS NULL " +
+                   "AND NOT EXISTS (SELECT 1 FROM email_analytics a WHERE a.newsletter_id = s.newsletter_id)",
+           nativeQuery = true)
+    int deleteStatsWithoutAnalytics();
+
+    // Repeat opens short-circuited by the duplicate-open filter are only counted here, not in
+    // email_analytics, so a rebuild never lowers the opened total
+
+    @Modifying
+    @Query(value = "INSERT INTO newsletter_stats (newsletter_id, sent, failed, opened, unique_opened, updated_at) " +
+                   "SELECT newsletter_id, " +
+                   "COUNT(*) FILTER (WHERE status = 'SENT'), " +
+                   "COUNT(*) FILTER (WHERE status = 'FAILED'), " +
+                   "COALESCE(SUM(GREATEST(open_count, CASE WHEN opened THEN 1 ELSE 0 END)), 0), " +
+                   "COUNT(*) FILTER (WHERE opened), now() " +
+                   "FROM email_analytics WHERE newsletter_id >= :fromId AND newsletter_id < :toId " +
+                   "GROUP BY newsletter_id " +
+                   "ON CONFLICT (newsletter_id) DO UPDATE SET sent = EXCLUDED.sent, failed = EXCLUDED.failed, " +
+                   "opened = GREATEST(EXCLUDED.opened, newsletter_stats.opened), " +
+                   "unique_opened = EXCLUDED.unique_opened, updated_at = now()",
+           nativeQuery = true)
+    int rebuildFromAnalytics(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Archived newsletters keep these totals once their analytics rows are gone
+    @Modifying
+    @Query(value = "UPDATE newsletter_stats SET archived_at = now() " +
+                   "WHERE newsletter_id >= :fromId AND newsletter_id < :toId AND archived_at IS NULL",
+           nativeQuery = true)
+    int markArchived(@Param("fromId") long fromId, @Param("toId") long toId);
+}
@@ -2,17 +2,43 @@ package com.simplyfound.emailmarketapi.Repositories;
 
 import com.simplyfound.emailmarketapi.Models.ScheduledEmail;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ScheduledEmailRepository extends JpaRepository<ScheduledEmail, Long> {
     List<ScheduledEmail> findBySentFalseAndScheduledAtLessThanEqual(LocalDateTime now);
     List<ScheduledEmail> findByNewsletterId(Long newsletterId);
     List<ScheduledEmail> findBySentFalseOrderByScheduledAtAsc();
+
+    @Query(value = "SELECT * FROM scheduled_emails WHERE id = :id AND sent = false " +
+                   "AND (lease_expires_at IS NULL OR lease_expires_at < :now) FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    Optional<ScheduledEmail> lockClaimable(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Query(value = "SELECT * FROM scheduled_emails WHERE sent = false AND scheduled_at <= :now " +
+                   "AND (lease_expires_at IS NULL OR lease_expires_at < :now) " +
+                   "ORDER BY scheduled_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<ScheduledEmail> lockDueClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE ScheduledEmail s SET s.sent = true, s.sentAt = :now, s.sendJobId = :jobId, " +
+           "s.leaseOwner = null, s.leaseExpiresAt = null " +
+           "WHERE s.id = :id AND s.sent = false AND s.leaseOwner = :owner")
+    int markDispatched(@Param("id") Long id, @Param("jobId") Long jobId, @Param("owner") String owner,
+                       @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ScheduledEmail s SET s.leaseOwner = null, s.leaseExpiresAt = null " +
+           "WHERE s.id = :id AND s.leaseOwner = :owner")
+    int releaseLease(@Param("id") Long id, @Param("owner") String owner);
 }
 
 
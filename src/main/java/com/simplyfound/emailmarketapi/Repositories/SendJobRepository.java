@@ -0,0 +1,37 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import com.simplyfound.emailmarketapi.Models.SendJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SendJobRepository extends JpaRepository<SendJob, Long> {
+    List<SendJob> findByStatus(SendJob.Status status);
+
+    // Running jobs nobody holds a live lease on, plus this node's own jobs from before a restart
+    @Query(value = "SELECT * FROM send_jobs WHERE status = 'RUNNING' " +
+                   "AND (lease_expires_at IS NULL OR lease_expires_at < :now OR lease_owner = :owner) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<SendJob> lockOrphaned(@Param("now") LocalDateTime now, @Param("owner") String owner,
+                               @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE SendJob j SET j.leaseExpiresAt = :expires " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner AND j.status = :status")
+    int renewLease(@Param("id") Long id, @Param("owner") String owner, @Param("expires") LocalDateTime expires,
+                   @Param("status") SendJob.Status status);
+    List<SendJob> findByNewsletterIdOrderByCreatedAtDesc(Long newsletterId);
+
+    @Modifying
+    @Query("UPDATE SendJob j SET j.sentCount = j.sentCount + :sent, j.failedCount = j.failedCount + :failed, " +
+           "j.updatedAt = :now WHERE j.id = :id")
+    int addProgress(@Param("id") Long id, @Param("sent") int sent, @Param("failed") int failed,
+                    @Param("now") LocalDateTime now);
+}
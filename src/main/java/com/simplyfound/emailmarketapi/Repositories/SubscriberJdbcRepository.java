@@ -0,0 +1,157 @@
+package com.simplyfound.emailmarketapi.Repositories;
+
+import com.simplyfound.emailmarketapi.Models.SubscriberSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Set-based statements on subscribers
+@Repository
+@RequiredArgsConstructor
+public class SubscriberJdbcRepository {
+
+    // Same outcome per address as SubscriberService.subscribe: new addresses are inserted,
+    // unsubscribed ones resubscribed and subscribed ones left as they are (no row returned)
+    private static final String SUBSCRIBE_ALL =
+            "INSERT INTO subscribers (email, subscribed, subscribed_at) " +
+            "SELECT email, true, now() FROM unnest(?) AS v(email) " +
+            "ON CONFLICT ((lower(email))) DO UPDATE SET subscribed = true, subscribed_at = EXCLUDED.subscribed_at, " +
+            "unsubscribed_at = NULL WHERE subscribers.subscribed = false " +
+            "RETURNING email, (xmax = 0) AS inserted";
+
+    private static final String SUBSCRIBE =
+            "INSERT INTO subscribers (email, subscribed, subscribed_at) VALUES (lower(?), true, now()) " +
+            "ON CONFLICT ((lower(email))) DO UPDATE SET subscribed = true, subscribed_at = EXCLUDED.subscribed_at, " +
+            "unsubscribed_at = NULL WHERE subscribers.subscribed = false " +
+            "RETURNING id, email, subscribed, subscribed_at, unsubscribed_at, (xmax = 0) AS inserted";
+
+    // Repeated unsubscribes keep the time of the first one. The locked subquery reports whether
+    // the row was subscribed before this statement changed it.
+    private static final String UNSUBSCRIBE =
+            "UPDATE subscribers s SET subscribed = false, unsubscribed_at = COALESCE(s.unsubscribed_at, now()) " +
+            "FROM (SELECT id, subscribed FROM subscribers WHERE lower(email) = lower(?) FOR UPDATE) prev " +
+            "WHERE s.id = prev.id " +
+            "RETURNING s.id, s.email, s.subscribed, s.subscribed_at, s.unsubscribed_at, prev.subscribed AS was_subscribed";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Empty when the address is already subscribed
+    public Optional<Subscribed> subscribe(String email) {
+        List<Subscribed> rows = jdbcTemplate.query(SUBSCRIBE,
+                (rs, rowNum) -> new Subscribed(mapSummary(rs, rowNum), rs.getBoolean("inserted")), email);
+        return rows.stream().findFirst();
+    }
+
+    // Empty when there is no such subscriber
+    public Optional<Unsubscribed> unsubscribe(String email) {
+        List<Unsubscribed> rows = jdbcTemplate.query(UNSUBSCRIBE,
+                (rs, rowNum) -> new Unsubscribed(mapSummary(rs, rowNum), rs.getBoolean("was_subscribed")), email);
+        return rows.stream().findFirst();
+    }
+
+    // The deleted row's subscribed flag; empty when there is no such subscriber
+    public Optional<Boolean> delete(Long id) {
+        return jdbcTemplate.query("DELETE FROM subscribers WHERE id = ? RETURNING subscribed",
+                (rs, rowNum) -> rs.getBoolean(1), id).stream().findFirst();
+    }
+
+    // emails must be distinct and lower-cased: one statement cannot update the same row twice
+    public SubscribeCounts subscribeAll(String[] emails) {
+        long[] inserted = new long[1];
+        List<String> resubscribed = new ArrayList<>();
+        jdbcTemplate.query(SUBSCRIBE_ALL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", emails)),
+                rs -> {
+                    if (rs.getBoolean("inserted")) {
+                        inserted[0]++;
+                    } else {
+                        resubscribed.add(rs.getString("email"));
+                    }
+                });
+        return new SubscribeCounts(inserted[0], resubscribed);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachUnsubscribedEmail(Consumer<String> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT email FROM subscribers WHERE subscribed = false");
+            ps.setFetchSize(10_000);
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getString(1));
+        });
+    }
+
+    // One keyset page in id order; subscribed and emailPrefix are optional filters
+    public List<SubscriberSummary> findPage(long afterId, Boolean subscribed, String emailPrefix, int limit) {
+        List<Object> args = new ArrayList<>();
+        String sql = select(afterId, subscribed, emailPrefix, args) + " LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, SubscriberJdbcRepository::mapSummary, args.toArray());
+    }
+
+    // Streams every matching row through a server-side cursor. PostgreSQL only uses the fetch
+    // size inside a transaction, so callers must run in one.
+    public void streamSubscribers(Boolean subscribed, String emailPrefix, int fetchSize,
+                                  Consumer<SubscriberSummary> consumer) {
+        List<Object> args = new ArrayList<>();
+        String sql = select(0, subscribed, emailPrefix, args);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, rs -> {
+            consumer.accept(mapSummary(rs, 0));
+        });
+    }
+
+    private static String select(long afterId, Boolean subscribed, String emailPrefix, List<Object> args) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, email, subscribed, subscribed_at, unsubscribed_at FROM subscribers WHERE id > ?");
+        args.add(afterId);
+        if (subscribed != null) {
+            sql.append(" AND subscribed = ?");
+            args.add(subscribed);
+        }
+        if (emailPrefix != null && !emailPrefix.isEmpty()) {
+            // Matches idx_subscribers_email_lower
+            sql.append(" AND lower(email) LIKE ?");
+            args.add(escapeLike(emailPrefix.toLowerCase()) + "%");
+        }
+        return sql.append(" ORDER BY id").toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static SubscriberSummary mapSummary(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp subscribedAt = rs.getTimestamp("subscribed_at");
+        Timestamp unsubscribedAt = rs.getTimestamp("unsubscribed_at");
+        return new SubscriberSummary(rs.getLong("id"), rs.getString("email"), rs.getBoolean("subscribed"),
+                subscribedAt != null ? subscribedAt.toLocalDateTime() : null,
+                unsubscribedAt != null ? unsubscribedAt.toLocalDateTime() : null);
+    }
+
+    public record Subscribed(SubscriberSummary subscriber, boolean inserted) {
+    }
+
+    public record Unsubscribed(SubscriberSummary subscriber, boolean wasSubscribed) {
+    }
+
+    public record SubscribeCounts(long inserted, List<String> resubscribed) {
+    }
+}
@@ -1,18 +1,24 @@
 package com.simplyfound.emailmarketapi.Repositories;
 
+import com.simplyfound.emailmarketapi.Models.Recipient;
 import com.simplyfound.emailmarketapi.Models.Subscriber;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface SubscriberRepository extends JpaRepository<Subscriber, Long> {
-    Optional<Subscriber> findByEmail(String email);
     List<Subscriber> findBySubscribedTrue();
     long countBySubscribedTrue();
     long countBySubscribedFalse();
+
+    @Query("SELECT new com.simplyfound.emailmarketapi.Models.Recipient(s.id, s.email) FROM Subscriber s " +
+           "WHERE s.subscribed = true AND s.id > :afterId ORDER BY s.id")
+    List<Recipient> findActiveRecipientsAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
 
 
@@ -0,0 +1,108 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.simplyfound.emailmarketapi.Models.RecipientActivity;
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a newsletter's per-recipient analytics as NDJSON or CSV straight from a database
+ * cursor, so an export uses the same memory whatever the audience size.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsExportService {
+
+    private final EmailAnalyticsJdbcRepository analyticsJdbcRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.analytics.export-fetch-size:1000}")
+    private int fetchSize;
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    @Transactional(readOnly = true)
+    public void export(Long newsletterId, Format format, OutputStream out) throws IOException {
+        try {
+            if (format == Format.CSV) {
+                writeCsv(newsletterId, out);
+            } else {
+                writeNdjson(newsletterId, out);
+            }
+        } catch (UncheckedIOException e) {
+            // Usually the client went away mid-download
+            throw e.getCause();
+        }
+    }
+
+    private void writeNdjson(Long newsletterId, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        // Rows go out as the generator's buffer fills, not one flushed chunk per row
+        ObjectWriter rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        analyticsJdbcRepository.streamRecipientActivity(newsletterId, fetchSize, row -> {
+            try {
+                rowWriter.writeValue(json, row);
+                json.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        json.flush();
+    }
+
+    private void writeCsv(Long newsletterId, OutputStream out) throws IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        csv.write("id,recipient_email,status,opened,opened_at,open_count\n");
+        analyticsJdbcRepository.streamRecipientActivity(newsletterId, fetchSize, row -> {
+            try {
+                writeCsvRow(csv, row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        csv.flush();
+    }
+
+    private void writeCsvRow(Writer csv, RecipientActivity row) throws IOException {
+        csv.write(String.valueOf(row.id()));
+        csv.write(',');
+        csv.write(csvField(row.recipientEmail()));
+        csv.write(',');
+        csv.write(row.status() != null ? row.status().name() : "");
+        csv.write(',');
+        csv.write(String.valueOf(row.opened()));
+        csv.write(',');
+        csv.write(row.openedAt() != null ? row.openedAt().toString() : "");
+        csv.write(',');
+        csv.write(String.valueOf(row.openCount()));
+        csv.write('\n');
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
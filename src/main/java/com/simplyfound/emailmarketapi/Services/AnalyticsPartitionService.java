@@ -0,0 +1,100 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsPartitionRepository;
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsPartitionRepository.Partition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Maintains the newsletter id range partitions of email_analytics. Partitions are created ahead
+ * of new newsletters; once every newsletter in a partition has been inactive for the archive
+ * period its rows are rolled up into newsletter_stats and the partition is detached, so the
+ * live table only holds recent campaigns.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsPartitionService {
+
+    private final EmailAnalyticsPartitionRepository partitionRepository;
+    private final NewsletterStatsService statsService;
+
+    @Value("${app.analytics.partition.width:100}")
+    private long partitionWidth;
+
+    @Value("${app.analytics.partition.ahead:2}")
+    private int partitionsAhead;
+
+    // 0 disables archiving
+    @Value("${app.analytics.partition.archive-after-days:180}")
+    private int archiveAfterDays;
+
+    @Value("${app.analytics.partition.drop-archived:false}")
+    private boolean dropArchived;
+
+    // Fails startup rather than run with new campaigns landing in the default partition
+    @EventListener(ApplicationReadyEvent.class)
+    public void createPartitionsOnStartup() {
+        createPartitions();
+    }
+
+    @Scheduled(cron = "${app.analytics.partition.maintenance-cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        createPartitions();
+        if (archiveAfterDays > 0) {
+            archivePartitions();
+        }
+    }
+
+    // Keeps partitionsAhead empty partitions beyond the newsletter id sequence, so new campaigns
+    // never land in the default partition. Rows that did land there are moved out when their
+    // partition is created. Errors propagate: a failure here needs fixing, not retrying quietly.
+    public void createPartitions() {
+        List<Partition> partitions = partitionRepository.findPartitions();
+        long next = partitions.isEmpty() ? 0 : partitions.get(partitions.size() - 1).toId();
+        long target = partitionRepository.findNewsletterIdHighWater() + 1 + partitionsAhead * partitionWidth;
+        while (next < target) {
+            long moved = partitionRepository.createPartition(next, next + partitionWidth);
+            if (moved > 0) {
+                log.warn("Moved {} email_analytics rows for newsletters {} to {} out of the default partition",
+                        moved, next, next + partitionWidth - 1);
+            }
+            log.info("Created email_analytics partition for newsletters {} to {}", next, next + partitionWidth - 1);
+            next += partitionWidth;
+        }
+    }
+
+    public int archivePartitions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(archiveAfterDays);
+        long maxNewsletterId = partitionRepository.findNewsletterIdHighWater();
+        int archived = 0;
+        for (Partition partition : partitionRepository.findPartitions()) {
+            // Only ranges that new newsletters can no longer fall into
+            if (partition.toId() > maxNewsletterId) {
+                break;
+            }
+            try {
+                if (!partitionRepository.isInactiveSince(partition.fromId(), partition.toId(), cutoff)) {
+                    continue;
+                }
+                int rolledUp = statsService.rollUp(partition.fromId(), partition.toId());
+                if (partitionRepository.archive(partition, dropArchived)) {
+                    archived++;
+                    log.info("Archived {} after rolling up {} newsletter(s)", partition.name(), rolledUp);
+                }
+            } catch (Exception e) {
+                // Rolled-up totals stay correct if the detach failed; it is retried on the next run
+                log.error("Failed to archive {}", partition.name(), e);
+            }
+        }
+        return archived;
+    }
+}
@@ -0,0 +1,139 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Enumeration;
+
+/**
+ * Builds the per-recipient messages of one campaign. The template's invariant segments are
+ * quoted-printable encoded once; each segment ends in a soft line break, so segments can be
+ * concatenated with the separately encoded recipient slots and still form a valid body.
+ * Per recipient only the headers and the tracking token are produced, and the body is
+ * streamed straight to the SMTP transport.
+ */
+public class CampaignMessageFactory {
+
+    private static final int MAX_LINE = 76;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final Session session;
+    private final InternetAddress from;
+    private final String encodedSubject;
+    private final byte[][] encodedSegments;
+
+    public CampaignMessageFactory(NewsletterTemplate template, Session session, String fromEmail)
+            throws MessagingException {
+        this.session = session;
+        this.from = new InternetAddress(fromEmail);
+        try {
+            this.encodedSubject = MimeUtility.fold(9, MimeUtility.encodeText(template.getSubject(), "UTF-8", null));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Cannot encode subject", e);
+        }
+
+        byte[][] segments = template.segments();
+        this.encodedSegments = new byte[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            encodedSegments[i] = encodeQuotedPrintable(segments[i]);
+        }
+    }
+
+    public MimeMessage create(String recipientEmail, String trackingToken) throws MessagingException {
+        CampaignMimeMessage message = new CampaignMimeMessage(session, encodedSegments,
+                encodeQuotedPrintable(NewsletterTemplate.recipientKey(trackingToken)));
+        message.setFrom(from);
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipientEmail));
+        message.setHeader("Subject", encodedSubject);
+        message.setSentDate(new Date());
+        message.setHeader("Content-Type", "text/html; charset=UTF-8");
+        message.setHeader("Content-Transfer-Encoding", "quoted-printable");
+        return message;
+    }
+
+    static byte[] encodeQuotedPrintable(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length + input.length / 8 + 8);
+        int column = 0;
+        for (int i = 0; i < input.length; i++) {
+            int c = input[i] & 0xff;
+            boolean beforeLineBreak = i + 1 < input.length && input[i + 1] == '\r';
+            if (c == '\r' && i + 1 < input.length && input[i + 1] == '\n') {
+                out.writeBytes(CRLF);
+                column = 0;
+                i++;
+                continue;
+            }
+            boolean literal = (c >= 33 && c <= 126 && c != '=') || ((c == ' ' || c == '\t') && !beforeLineBreak);
+            int width = literal ? 1 : 3;
+            if (column + width > MAX_LINE - 1) {
+                out.write('=');
+                out.writeBytes(CRLF);
+                column = 0;
+            }
+            if (literal) {
+                out.write(c);
+            } else {
+                out.write('=');
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0x0f]);
+            }
+            column += width;
+        }
+        // Soft break so the next independently encoded part starts on a fresh line
+        out.write('=');
+        out.writeBytes(CRLF);
+        return out.toByteArray();
+    }
+
+    private static final class CampaignMimeMessage extends MimeMessage {
+
+        private final byte[][] encodedSegments;
+        private final byte[] encodedKey;
+
+        private CampaignMimeMessage(Session session, byte[][] encodedSegments, byte[] encodedKey) {
+            super(session);
+            this.encodedSegments = encodedSegments;
+            this.encodedKey = encodedKey;
+        }
+
+        // The content headers are set explicitly; there is no DataHandler to derive them from
+        @Override
+        protected void updateHeaders() throws MessagingException {
+            setHeader("MIME-Version", "1.0");
+            if (getHeader("Message-ID") == null) {
+                updateMessageID();
+            }
+        }
+
+        @Override
+        public void writeTo(OutputStream os, String[] ignoreList) throws IOException, MessagingException {
+            if (!saved) {
+                saveChanges();
+            }
+            Enumeration<String> headerLines = getNonMatchingHeaderLines(ignoreList);
+            while (headerLines.hasMoreElements()) {
+                os.write(headerLines.nextElement().getBytes(StandardCharsets.UTF_8));
+                os.write(CRLF);
+            }
+            os.write(CRLF);
+
+            os.write(encodedSegments[0]);
+            for (int i = 1; i < encodedSegments.length; i++) {
+                os.write(encodedKey);
+                os.write(encodedSegments[i]);
+            }
+            os.flush();
+        }
+    }
+}
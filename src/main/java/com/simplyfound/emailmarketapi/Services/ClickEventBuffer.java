@@ -0,0 +1,169 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Repositories.EmailClickJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for link clicks, flushed like {@link OpenEventBuffer}: a redirect only
+ * enqueues the click and a background flusher writes the queued clicks and the per-link
+ * counters in batches. Clicks whose batch keeps failing are retried one at a time and dropped
+ * if they still fail.
+ */
+@Service
+@Slf4j
+public class ClickEventBuffer {
+
+    private final EmailClickJdbcRepository clickJdbcRepository;
+    private final TaskExecutor backgroundExecutor;
+
+    @Value("${app.tracking.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${app.tracking.flush-threshold:10000}")
+    private int flushThreshold;
+
+    @Value("${app.tracking.flush-max-attempts:5}")
+    private int maxAttempts;
+
+    private final Queue<PendingClick> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public ClickEventBuffer(EmailClickJdbcRepository clickJdbcRepository,
+                            @Qualifier("backgroundTaskExecutor") TaskExecutor backgroundExecutor) {
+        this.clickJdbcRepository = clickJdbcRepository;
+        this.backgroundExecutor = backgroundExecutor;
+    }
+
+    // analyticsId is null when the recipient could not be identified
+    public void recordClick(long linkId, long newsletterId, Long analyticsId) {
+        pending.add(new PendingClick(linkId, newsletterId, analyticsId, LocalDateTime.now(), 0));
+        if (pendingCount.incrementAndGet() >= flushThreshold && !flushLock.isLocked()) {
+            backgroundExecutor.execute(this::flush);
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.tracking.flush-interval-ms:2000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            drain();
+        } finally {
+            flushLock.unlock();
+        }
+        if (getPendingCount() > 0) {
+            log.warn("{} click events could not be written before shutdown", getPendingCount());
+        }
+    }
+
+    private void drain() {
+        List<PendingClick> batch = new ArrayList<>(flushBatchSize);
+        // Only what was queued when the flush started, so a steady stream of clicks cannot keep it going
+        int remaining = pendingCount.get();
+        while (remaining > 0) {
+            PendingClick click;
+            while (batch.size() < flushBatchSize && (click = pending.poll()) != null) {
+                batch.add(click);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (Exception e) {
+                log.error("Failed to flush {} click events", batch.size(), e);
+                requeue(batch, e);
+                return;
+            }
+            log.debug("Flushed {} click events", batch.size());
+            pendingCount.addAndGet(-batch.size());
+            remaining -= batch.size();
+            batch.clear();
+        }
+    }
+
+    // Retried on the next flush; clicks that have failed maxAttempts times are written on their
+    // own so one bad click cannot hold the rest back forever, and dropped if they still fail
+    private void requeue(List<PendingClick> batch, Exception error) {
+        if (OpenEventBuffer.isRetryable(error)) {
+            pending.addAll(batch);
+            return;
+        }
+        int dropped = 0;
+        for (PendingClick click : batch) {
+            PendingClick failed = click.failed();
+            if (failed.attempts() < maxAttempts) {
+                pending.add(failed);
+                continue;
+            }
+            try {
+                write(List.of(failed));
+            } catch (Exception e) {
+                if (OpenEventBuffer.isRetryable(e)) {
+                    pending.add(failed);
+                    continue;
+                }
+                dropped++;
+                log.debug("Dropped click {}: {}", failed, e.getMessage());
+            }
+            pendingCount.decrementAndGet();
+        }
+        if (dropped > 0) {
+            log.error("Dropped {} click events that failed {} flushes", dropped, maxAttempts);
+        }
+    }
+
+    private void write(List<PendingClick> batch) {
+        Long[] linkIds = new Long[batch.size()];
+        Long[] newsletterIds = new Long[batch.size()];
+        Long[] analyticsIds = new Long[batch.size()];
+        Timestamp[] clickedAt = new Timestamp[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingClick click = batch.get(i);
+            linkIds[i] = click.linkId();
+            newsletterIds[i] = click.newsletterId();
+            analyticsIds[i] = click.analyticsId();
+            clickedAt[i] = Timestamp.valueOf(click.clickedAt());
+        }
+        clickJdbcRepository.recordClicks(linkIds, newsletterIds, analyticsIds, clickedAt);
+    }
+
+    // attempts counts failed flushes of the click
+    private record PendingClick(long linkId, long newsletterId, Long analyticsId, LocalDateTime clickedAt,
+                                int attempts) {
+        PendingClick failed() {
+            return new PendingClick(linkId, newsletterId, analyticsId, clickedAt, attempts + 1);
+        }
+    }
+}
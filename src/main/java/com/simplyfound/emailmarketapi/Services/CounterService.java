@@ -0,0 +1,110 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Repositories.NewsletterRepository;
+import com.simplyfound.emailmarketapi.Repositories.SubscriberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscriber and campaign totals for the dashboards, served from memory. Seeded from SQL
+ * aggregates at startup, adjusted as subscribers and sends change on this node and reconciled
+ * against the database periodically, which also picks up changes made on other nodes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CounterService {
+
+    private final SubscriberRepository subscriberRepository;
+    private final NewsletterRepository newsletterRepository;
+
+    private final AtomicLong subscribed = new AtomicLong();
+    private final AtomicLong unsubscribed = new AtomicLong();
+    private final AtomicLong emailsSent = new AtomicLong();
+
+    public long getSubscribed() {
+        return subscribed.get();
+    }
+
+    public long getUnsubscribed() {
+        return unsubscribed.get();
+    }
+
+    public long getEmailsSent() {
+        return emailsSent.get();
+    }
+
+    public void subscriberAdded(long count) {
+        afterCommit(() -> subscribed.addAndGet(count));
+    }
+
+    public void subscribersResubscribed(long count) {
+        afterCommit(() -> {
+            subscribed.addAndGet(count);
+            unsubscribed.addAndGet(-count);
+        });
+    }
+
+    public void subscriberUnsubscribed() {
+        afterCommit(() -> {
+            subscribed.decrementAndGet();
+            unsubscribed.incrementAndGet();
+        });
+    }
+
+    public void subscriberDeleted(boolean wasSubscribed) {
+        afterCommit(() -> (wasSubscribed ? subscribed : unsubscribed).decrementAndGet());
+    }
+
+    public void emailsSentChanged(long delta) {
+        if (delta != 0) {
+            afterCommit(() -> emailsSent.addAndGet(delta));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedCounters() {
+        reconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${app.counters.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            set(subscribed, subscriberRepository.countBySubscribedTrue(), "subscribed");
+            set(unsubscribed, subscriberRepository.countBySubscribedFalse(), "unsubscribed");
+            set(emailsSent, newsletterRepository.sumSentRecipients(), "emailsSent");
+        } catch (Exception e) {
+            log.error("Failed to reconcile counters", e);
+        }
+    }
+
+    private void set(AtomicLong counter, long actual, String name) {
+        long previous = counter.getAndSet(actual);
+        if (previous != actual) {
+            log.debug("Counter {} reconciled from {} to {}", name, previous, actual);
+        }
+    }
+
+    // Counts change only once the write is committed
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
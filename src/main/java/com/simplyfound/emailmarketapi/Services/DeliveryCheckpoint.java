@@ -0,0 +1,76 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes a send job's delivery results back to its outbox rows, retrying failed writes. Rows that
+ * were sent but whose result could not be written yet are remembered for the rest of the run, so
+ * later passes skip them instead of mailing the recipient again, and are written with the next
+ * batch. Failed, deferred and suppressed rows whose write was lost simply stay pending and are
+ * retried by the next pass.
+ */
+@Slf4j
+final class DeliveryCheckpoint {
+
+    private final SendJobService sendJobService;
+    private final Long jobId;
+    private final Long newsletterId;
+    private final int maxAttempts;
+    private final long retryDelayMs;
+    private final Set<Long> unrecordedSent = ConcurrentHashMap.newKeySet();
+
+    DeliveryCheckpoint(SendJobService sendJobService, Long jobId, Long newsletterId, int maxAttempts, long retryDelayMs) {
+        this.sendJobService = sendJobService;
+        this.jobId = jobId;
+        this.newsletterId = newsletterId;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    boolean isSentButUnrecorded(long outboxId) {
+        return unrecordedSent.contains(outboxId);
+    }
+
+    void record(List<Long> sentIds, List<Long> failedIds, List<Long> suppressedIds) throws InterruptedException {
+        List<Long> sent = new ArrayList<>(sentIds);
+        sent.addAll(unrecordedSent);
+        if (write(sent, failedIds, suppressedIds)) {
+            sent.forEach(unrecordedSent::remove);
+        } else {
+            unrecordedSent.addAll(sentIds);
+        }
+    }
+
+    // Writes the results still held back, trying until it succeeds
+    void flush() throws InterruptedException {
+        while (!unrecordedSent.isEmpty()) {
+            record(List.of(), List.of(), List.of());
+        }
+    }
+
+    int getUnrecordedCount() {
+        return unrecordedSent.size();
+    }
+
+    private boolean write(List<Long> sentIds, List<Long> failedIds, List<Long> suppressedIds) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                sendJobService.recordDeliveries(jobId, newsletterId, sentIds, failedIds, suppressedIds);
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("Failed to checkpoint {} deliveries of send job {}; sent rows are held back from resending",
+                            sentIds.size() + failedIds.size() + suppressedIds.size(), jobId, e);
+                    return false;
+                }
+                log.warn("Checkpoint of send job {} failed (attempt {}): {}", jobId, attempt, e.getMessage());
+                Thread.sleep(retryDelayMs * attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.simplyfound.emailmarketapi.Services;
+
+// A message the relay kept throttling; it stays pending in the outbox for a later pass
+public class DeliveryDeferredException extends RuntimeException {
+
+    public DeliveryDeferredException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
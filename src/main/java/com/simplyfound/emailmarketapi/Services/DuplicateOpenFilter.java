@@ -0,0 +1,190 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers which analytics rows already have an open recorded, so repeat pixel fetches (image
+ * proxies re-fetch constantly) can skip the row update. Each newsletter gets one bit per
+ * analytics id between its lowest and highest id; the set is exact, so a first open is never
+ * mistaken for a repeat. A newsletter's bits are loaded from the database in the background on
+ * its first open; until then only opens recorded by this node are known.
+ */
+@Service
+@Slf4j
+public class DuplicateOpenFilter {
+
+    private final EmailAnalyticsJdbcRepository analyticsJdbcRepository;
+    private final TaskExecutor backgroundExecutor;
+
+    // Newsletters whose id range needs more than this are not filtered
+    @Value("${app.tracking.open-filter.max-bytes-per-newsletter:1048576}")
+    private long maxBytesPerNewsletter;
+
+    @Value("${app.tracking.open-filter.max-newsletters:32}")
+    private int maxNewsletters;
+
+    private final Map<Long, OpenedIds> filters = new ConcurrentHashMap<>();
+    private final Set<Long> loading = ConcurrentHashMap.newKeySet();
+
+    public DuplicateOpenFilter(EmailAnalyticsJdbcRepository analyticsJdbcRepository,
+                               @Qualifier("backgroundTaskExecutor") TaskExecutor backgroundExecutor) {
+        this.analyticsJdbcRepository = analyticsJdbcRepository;
+        this.backgroundExecutor = backgroundExecutor;
+    }
+
+    // Marks the row opened; returns false if it already was (a repeat open)
+    public boolean markOpened(long newsletterId, long analyticsId) {
+        // Preview pixels carry analytics id 0, which matches no row
+        if (analyticsId <= 0) {
+            return true;
+        }
+        OpenedIds opened = filters.get(newsletterId);
+        if (opened == null) {
+            startLoad(newsletterId, analyticsId);
+            return true;
+        }
+        opened.lastUsed = System.currentTimeMillis();
+        if (opened == OpenedIds.UNFILTERED || analyticsId < opened.firstId) {
+            return true;
+        }
+        if (analyticsId > opened.lastId) {
+            // Rows from a later send of the newsletter. The loaded bits keep filtering the
+            // earlier rows while the wider range is read in the background; ids a reload has
+            // already looked for do not trigger another one.
+            if (analyticsId > opened.checkedUpTo) {
+                startLoad(newsletterId, analyticsId);
+            }
+            return true;
+        }
+        return opened.set(analyticsId);
+    }
+
+    // Forgets an open that was buffered but never written, so the next hit is recorded again
+    public void clearOpened(long newsletterId, long analyticsId) {
+        OpenedIds opened = filters.get(newsletterId);
+        if (opened != null && opened != OpenedIds.UNFILTERED) {
+            opened.clear(analyticsId);
+        }
+    }
+
+    public int getFilteredNewsletterCount() {
+        return filters.size();
+    }
+
+    private void startLoad(long newsletterId, long analyticsId) {
+        if (loading.add(newsletterId)) {
+            backgroundExecutor.execute(() -> load(newsletterId, analyticsId));
+        }
+    }
+
+    private void load(long newsletterId, long analyticsId) {
+        try {
+            long[] range = analyticsJdbcRepository.findIdRange(newsletterId);
+            if (range == null) {
+                return;
+            }
+            long bits = range[1] - range[0] + 1;
+            if (bits > maxBytesPerNewsletter * 8) {
+                log.info("Newsletter {} spans {} analytics ids; repeat opens are not filtered", newsletterId, bits);
+                filters.put(newsletterId, OpenedIds.UNFILTERED);
+                return;
+            }
+
+            // Published before the opened rows are read, so opens recorded meanwhile are kept
+            OpenedIds opened = new OpenedIds(range[0], range[1]);
+            opened.checkedUpTo = Math.max(range[1], analyticsId);
+            OpenedIds previous = filters.get(newsletterId);
+            if (previous != null && previous != OpenedIds.UNFILTERED) {
+                // Keeps opens still buffered for writing
+                opened.copyFrom(previous);
+            }
+            filters.put(newsletterId, opened);
+            evictIfFull();
+            analyticsJdbcRepository.forEachOpenedId(newsletterId, opened::set);
+            log.debug("Loaded opened rows of newsletter {} into the duplicate-open filter", newsletterId);
+        } catch (Exception e) {
+            log.error("Failed to load the duplicate-open filter for newsletter {}", newsletterId, e);
+            filters.remove(newsletterId);
+        } finally {
+            loading.remove(newsletterId);
+        }
+    }
+
+    private void evictIfFull() {
+        while (filters.size() > maxNewsletters) {
+            filters.entrySet().stream()
+                    .min((a, b) -> Long.compare(a.getValue().lastUsed, b.getValue().lastUsed))
+                    .ifPresent(oldest -> filters.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private static final class OpenedIds {
+        static final OpenedIds UNFILTERED = new OpenedIds(0, -1);
+
+        final long firstId;
+        final long lastId;
+        final AtomicLongArray words;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long checkedUpTo;
+
+        OpenedIds(long firstId, long lastId) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.words = new AtomicLongArray((int) ((lastId - firstId + 64) >>> 6));
+        }
+
+        void copyFrom(OpenedIds other) {
+            for (long id = Math.max(firstId, other.firstId); id <= Math.min(lastId, other.lastId); id++) {
+                if (other.isSet(id)) {
+                    set(id);
+                }
+            }
+        }
+
+        boolean isSet(long id) {
+            long offset = id - firstId;
+            return (words.get((int) (offset >>> 6)) & (1L << offset)) != 0;
+        }
+
+        boolean covers(long id) {
+            return id >= firstId && id <= lastId;
+        }
+
+        // Sets the bit; returns true if it was clear
+        boolean set(long id) {
+            if (!covers(id)) {
+                return false;
+            }
+            long offset = id - firstId;
+            int index = (int) (offset >>> 6);
+            long mask = 1L << offset;
+            while (true) {
+                long word = words.get(index);
+                if ((word & mask) != 0) {
+                    return false;
+                }
+                if (words.compareAndSet(index, word, word | mask)) {
+                    return true;
+                }
+            }
+        }
+
+        void clear(long id) {
+            if (covers(id)) {
+                long offset = id - firstId;
+                long mask = 1L << offset;
+                words.updateAndGet((int) (offset >>> 6), word -> word & ~mask);
+            }
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package com.simplyfound.emailmarketapi.Services;
 
 import com.simplyfound.emailmarketapi.Models.ScheduledEmail;
+import com.simplyfound.emailmarketapi.Models.SendJob;
 import com.simplyfound.emailmarketapi.Repositories.ScheduledEmailRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -18,44 +30,53 @@ public class EmailSchedulingService {
 
     private final ScheduledEmailRepository scheduledEmailRepository;
     private final EmailService emailService;
+    private final SendJobService sendJobService;
+    private final JobLeaseService leaseService;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${app.scheduling.claim-batch-size:50}")
+    private int claimBatchSize;
+
+    // In-memory timers for pending scheduled emails, keyed by scheduled email id
+    private final Map<Long, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
 
     @Transactional
     public ScheduledEmail scheduleEmail(Long newsletterId, LocalDateTime scheduledAt) {
         log.info("Scheduling email for newsletter {} at {}", newsletterId, scheduledAt);
-        
+
         ScheduledEmail scheduledEmail = new ScheduledEmail();
         scheduledEmail.setNewsletterId(newsletterId);
         scheduledEmail.setScheduledAt(scheduledAt);
         scheduledEmail.setSent(false);
-        
+
         ScheduledEmail saved = scheduledEmailRepository.save(scheduledEmail);
+        afterCommit(() -> arm(saved));
         log.info("Email scheduled successfully with id: {}", saved.getId());
-        
+
         return saved;
     }
 
-    @Scheduled(fixedRate = 60000) // Check every minute
-    @Transactional
-    public void processScheduledEmails() {
-        LocalDateTime now = LocalDateTime.now();
-        List<ScheduledEmail> scheduledEmails = scheduledEmailRepository
-                .findBySentFalseAndScheduledAtLessThanEqual(now);
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPendingEmails() {
+        List<ScheduledEmail> pending = scheduledEmailRepository.findBySentFalseOrderByScheduledAtAsc();
+        pending.forEach(this::arm);
+        log.info("Loaded {} pending scheduled emails", pending.size());
+    }
 
-        if (scheduledEmails.isEmpty()) {
-            return;
+    // Safety net only: timers normally fire on time. Re-arms rows the timers do not know about
+    // (e.g. inserted outside this service) and catches anything that was missed.
+    @Scheduled(fixedDelayString = "${app.scheduling.reconcile-interval-ms:900000}",
+               initialDelayString = "${app.scheduling.reconcile-interval-ms:900000}")
+    public void reconcileScheduledEmails() {
+        // Due emails nobody holds a live lease on, e.g. left behind by a node that died mid-dispatch
+        for (ScheduledEmail claimed : leaseService.claimDueScheduledEmails(claimBatchSize)) {
+            log.info("Reconciliation claimed overdue scheduled email {}", claimed.getId());
+            dispatch(claimed);
         }
-
-        log.info("Processing {} scheduled emails", scheduledEmails.size());
-
-        for (ScheduledEmail scheduledEmail : scheduledEmails) {
-            try {
-                emailService.sendNewsletter(scheduledEmail.getNewsletterId());
-                scheduledEmail.setSent(true);
-                scheduledEmail.setSentAt(LocalDateTime.now());
-                scheduledEmailRepository.save(scheduledEmail);
-                log.info("Scheduled email sent successfully for newsletter {}", scheduledEmail.getNewsletterId());
-            } catch (Exception e) {
-                log.error("Error sending scheduled email for newsletter {}", scheduledEmail.getNewsletterId(), e);
+        for (ScheduledEmail scheduledEmail : scheduledEmailRepository.findBySentFalseOrderByScheduledAtAsc()) {
+            if (!timers.containsKey(scheduledEmail.getId())) {
+                log.info("Reconciliation found unarmed scheduled email {}", scheduledEmail.getId());
+                arm(scheduledEmail);
             }
         }
     }
@@ -72,14 +93,77 @@ public class EmailSchedulingService {
     public void cancelScheduledEmail(Long id) {
         ScheduledEmail scheduledEmail = scheduledEmailRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Scheduled email not found"));
-        
+
         if (scheduledEmail.getSent()) {
             throw new RuntimeException("Cannot cancel already sent email");
         }
-        
+
         scheduledEmailRepository.deleteById(id);
+        afterCommit(() -> disarm(id));
         log.info("Scheduled email cancelled: {}", id);
     }
-}
 
+    private void arm(ScheduledEmail scheduledEmail) {
+        arm(scheduledEmail.getId(), scheduledEmail.getScheduledAt());
+    }
+
+    private void arm(Long id, LocalDateTime fireAt) {
+        timers.compute(id, (key, existing) -> {
+            if (existing != null) {
+                existing.cancel(false);
+            }
+            // A time in the past fires immediately
+            return taskScheduler.schedule(() -> fire(id), fireAt.atZone(ZoneId.systemDefault()).toInstant());
+        });
+    }
+
+    private void disarm(Long id) {
+        ScheduledFuture<?> timer = timers.remove(id);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    // Every node arms a timer for each pending email; whichever claims the row first sends it
+    private void fire(Long id) {
+        timers.remove(id);
+        Optional<ScheduledEmail> claimed = leaseService.claimScheduledEmail(id);
+        if (claimed.isPresent()) {
+            dispatch(claimed.get());
+            return;
+        }
+
+        // Already sent, cancelled, or held by another node. In the last case check back once
+        // that node's lease lapses, so a dead node's email is taken over without polling.
+        scheduledEmailRepository.findById(id)
+                .filter(scheduledEmail -> !scheduledEmail.getSent())
+                .ifPresent(scheduledEmail -> arm(id, scheduledEmail.getLeaseExpiresAt() != null
+                        ? scheduledEmail.getLeaseExpiresAt()
+                        : leaseService.newLeaseExpiry()));
+    }
+
+    private void dispatch(ScheduledEmail claimed) {
+        try {
+            SendJob job = sendJobService.createJobForScheduledEmail(claimed);
+            emailService.executeSendJob(job.getId());
+            log.info("Scheduled email {} dispatched as send job {} for newsletter {}",
+                    claimed.getId(), job.getId(), claimed.getNewsletterId());
+        } catch (Exception e) {
+            log.error("Error sending scheduled email for newsletter {}", claimed.getNewsletterId(), e);
+            leaseService.releaseScheduledEmail(claimed.getId());
+        }
+    }
 
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
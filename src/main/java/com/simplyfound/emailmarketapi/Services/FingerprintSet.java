@@ -0,0 +1,148 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Set of non-zero 64-bit fingerprints in one open-addressing table with linear probing: 8 bytes
+ * per slot, at most three quarters full. Lookups run under an optimistic read and only take the
+ * read lock if a write raced them.
+ */
+final class FingerprintSet {
+
+    private static final long EMPTY = 0L;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] table;
+    private int size;
+
+    FingerprintSet(int expectedSize) {
+        table = new long[capacityFor(expectedSize)];
+    }
+
+    boolean contains(long fingerprint) {
+        long stamp = lock.tryOptimisticRead();
+        boolean found = indexOf(table, fingerprint) >= 0;
+        if (lock.validate(stamp)) {
+            return found;
+        }
+        stamp = lock.readLock();
+        try {
+            return indexOf(table, fingerprint) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean add(long fingerprint) {
+        long stamp = lock.writeLock();
+        try {
+            if (indexOf(table, fingerprint) >= 0) {
+                return false;
+            }
+            if (size + 1 > table.length / 4 * 3) {
+                resize(table.length * 2);
+            }
+            insert(table, fingerprint);
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean remove(long fingerprint) {
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(table, fingerprint);
+            if (index < 0) {
+                return false;
+            }
+            delete(index);
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long memoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    // Probes at most the whole table, so a lookup racing a write always terminates
+    private static int indexOf(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int index = slot(fingerprint, mask);
+        for (int probes = 0; probes < table.length; probes++) {
+            long current = table[index];
+            if (current == fingerprint) {
+                return index;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static void insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int index = slot(fingerprint, mask);
+        while (table[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        table[index] = fingerprint;
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long fingerprint : table) {
+            if (fingerprint != EMPTY) {
+                insert(resized, fingerprint);
+            }
+        }
+        table = resized;
+    }
+
+    // Backward-shift deletion: later entries of the probe run move up so lookups never stop early
+    private void delete(int index) {
+        int mask = table.length - 1;
+        int hole = index;
+        table[hole] = EMPTY;
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            long fingerprint = table[next];
+            if (fingerprint == EMPTY) {
+                return;
+            }
+            int home = slot(fingerprint, mask);
+            // The entry may fill the hole unless its home slot lies cyclically in (hole, next]
+            boolean homeAfterHole = hole <= next
+                    ? home > hole && home <= next
+                    : home > hole || home <= next;
+            if (!homeAfterHole) {
+                table[hole] = fingerprint;
+                table[next] = EMPTY;
+                hole = next;
+            }
+        }
+    }
+
+    private static int slot(long fingerprint, int mask) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity / 4 * 3 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,129 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.ScheduledEmail;
+import com.simplyfound.emailmarketapi.Models.SendJob;
+import com.simplyfound.emailmarketapi.Repositories.ScheduledEmailRepository;
+import com.simplyfound.emailmarketapi.Repositories.SendJobRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Leases that let several API nodes share scheduled emails and send jobs. Rows are claimed with
+ * SELECT ... FOR UPDATE SKIP LOCKED and stamped with this node's id and an expiry; send job
+ * leases are renewed by a heartbeat, and a lease that lapses is free for any node to take.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobLeaseService {
+
+    private final ScheduledEmailRepository scheduledEmailRepository;
+    private final SendJobRepository sendJobRepository;
+
+    @Value("${app.cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${app.cluster.lease-duration-ms:60000}")
+    private long leaseDurationMs;
+
+    // Send jobs this node is currently running
+    private final Set<Long> heldJobs = ConcurrentHashMap.newKeySet();
+    private String nodeId;
+
+    @PostConstruct
+    void init() {
+        nodeId = configuredNodeId.isBlank() ? generateNodeId() : configuredNodeId;
+        log.info("Cluster node id: {}", nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public LocalDateTime newLeaseExpiry() {
+        return LocalDateTime.now().plusNanos(leaseDurationMs * 1_000_000);
+    }
+
+    @Transactional
+    public Optional<ScheduledEmail> claimScheduledEmail(Long id) {
+        return scheduledEmailRepository.lockClaimable(id, LocalDateTime.now()).map(this::lease);
+    }
+
+    @Transactional
+    public List<ScheduledEmail> claimDueScheduledEmails(int limit) {
+        return scheduledEmailRepository.lockDueClaimable(LocalDateTime.now(), limit).stream()
+                .map(this::lease)
+                .toList();
+    }
+
+    @Transactional
+    public void releaseScheduledEmail(Long id) {
+        scheduledEmailRepository.releaseLease(id, nodeId);
+    }
+
+    @Transactional
+    public List<SendJob> claimOrphanedSendJobs(int limit) {
+        List<SendJob> jobs = sendJobRepository.lockOrphaned(LocalDateTime.now(), nodeId, limit).stream()
+                .filter(job -> !heldJobs.contains(job.getId()))
+                .toList();
+        for (SendJob job : jobs) {
+            job.setLeaseOwner(nodeId);
+            job.setLeaseExpiresAt(newLeaseExpiry());
+            hold(job.getId());
+        }
+        return sendJobRepository.saveAll(jobs);
+    }
+
+    public void hold(Long jobId) {
+        heldJobs.add(jobId);
+    }
+
+    public void release(Long jobId) {
+        heldJobs.remove(jobId);
+    }
+
+    public boolean holds(Long jobId) {
+        return heldJobs.contains(jobId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.heartbeat-interval-ms:20000}", scheduler = "leaseHeartbeatScheduler")
+    @Transactional
+    public void renewLeases() {
+        LocalDateTime expiry = newLeaseExpiry();
+        for (Long jobId : heldJobs) {
+            if (sendJobRepository.renewLease(jobId, nodeId, expiry, SendJob.Status.RUNNING) == 0) {
+                // Finished, or another node took the job over after our lease lapsed
+                heldJobs.remove(jobId);
+                log.warn("No longer holding the lease on send job {}", jobId);
+            }
+        }
+    }
+
+    private ScheduledEmail lease(ScheduledEmail scheduledEmail) {
+        scheduledEmail.setLeaseOwner(nodeId);
+        scheduledEmail.setLeaseExpiresAt(newLeaseExpiry());
+        return scheduledEmailRepository.save(scheduledEmail);
+    }
+
+    // Stable across restarts, so a restarted node reclaims its own running jobs straight away
+    private static String generateNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Cannot determine the host name; set app.cluster.node-id", e);
+        }
+    }
+}
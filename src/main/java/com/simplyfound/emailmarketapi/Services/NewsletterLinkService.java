@@ -0,0 +1,97 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.NewsletterLink;
+import com.simplyfound.emailmarketapi.Repositories.NewsletterLinkRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The tracked links of each newsletter. Links are registered when a campaign is compiled and
+ * kept in memory, so redirects are answered without a database round trip; a node that did
+ * not compile the campaign loads a link on its first click. Unknown codes are remembered for a
+ * short while, so bogus redirect URLs do not reach the database on every request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NewsletterLinkService {
+
+    private final NewsletterLinkRepository linkRepository;
+
+    @Value("${app.tracking.link-cache-size:100000}")
+    private int cacheSize;
+
+    @Value("${app.tracking.link-miss-ttl-ms:60000}")
+    private long missTtlMs;
+
+    private final Map<Long, Link> cache = new ConcurrentHashMap<>();
+    // Codes with no link, mapped to when the miss expires (System.nanoTime)
+    private final Map<Long, Long> misses = new ConcurrentHashMap<>();
+
+    // Returns the link's short code, creating the link on first use
+    public String register(Long newsletterId, String url) {
+        Long id = linkRepository.upsertLink(newsletterId, url);
+        misses.remove(id);
+        put(new Link(id, newsletterId, url));
+        return Long.toString(id, 36);
+    }
+
+    public Optional<Link> resolve(String code) {
+        long id;
+        try {
+            id = Long.parseLong(code, 36);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        Link cached = cache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Long missExpiresAt = misses.get(id);
+        if (missExpiresAt != null && missExpiresAt - System.nanoTime() > 0) {
+            return Optional.empty();
+        }
+        Optional<Link> loaded = linkRepository.findById(id)
+                .map(link -> new Link(link.getId(), link.getNewsletterId(), link.getUrl()));
+        if (loaded.isPresent()) {
+            misses.remove(id);
+            put(loaded.get());
+        } else {
+            makeRoom(misses);
+            misses.put(id, System.nanoTime() + missTtlMs * 1_000_000);
+        }
+        return loaded;
+    }
+
+    public List<NewsletterLink> getLinks(Long newsletterId) {
+        return linkRepository.findByNewsletterIdOrderById(newsletterId);
+    }
+
+    private void put(Link link) {
+        makeRoom(cache);
+        cache.put(link.id(), link);
+    }
+
+    // Entries are tiny and reloaded on demand, so dropping arbitrary ones is enough to stay bounded
+    private void makeRoom(Map<Long, ?> map) {
+        if (map.size() >= cacheSize) {
+            Iterator<Long> keys = map.keySet().iterator();
+            for (int i = 0; i < cacheSize / 10 && keys.hasNext(); i++) {
+                keys.next();
+                keys.remove();
+            }
+            log.debug("Link cache full; evicted entries down to {}", map.size());
+        }
+    }
+
+    public record Link(long id, long newsletterId, String url) {
+    }
+}
@@ -0,0 +1,201 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged send pipeline: render on the bounded CPU pool, send on the SMTP worker pool and record
+ * results in batches on a single virtual-thread writer. At most queue-capacity recipients are in
+ * flight at once, so a slow stage pushes back on the source and memory stays flat regardless
+ * of audience size.
+ */
+@Service
+@Slf4j
+public class NewsletterSendPipeline {
+
+    private final ThreadPoolTaskExecutor renderExecutor;
+    private final ThreadPoolTaskExecutor sendExecutor;
+
+    @Value("${app.send.send-workers:8}")
+    private int sendWorkers;
+
+    @Value("${app.send.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${app.send.record-batch-size:200}")
+    private int recordBatchSize;
+
+    public NewsletterSendPipeline(@Qualifier("backgroundTaskExecutor") ThreadPoolTaskExecutor renderExecutor,
+                                  @Qualifier("sendTaskExecutor") ThreadPoolTaskExecutor sendExecutor) {
+        this.renderExecutor = renderExecutor;
+        this.sendExecutor = sendExecutor;
+    }
+
+    public <T> Result run(String name, Iterator<T> recipients, Renderer<T> renderer,
+                          Sender sender, Recorder<T> recorder) throws InterruptedException {
+        // Both queues are effectively bounded by the in-flight permits
+        Semaphore inFlight = new Semaphore(queueCapacity);
+        BlockingQueue<Envelope<T>> sendQueue = new LinkedBlockingQueue<>();
+        BlockingQueue<Envelope<T>> recordQueue = new LinkedBlockingQueue<>();
+
+        CountDownLatch sendsDone = new CountDownLatch(sendWorkers);
+        CountDownLatch recordDone = new CountDownLatch(1);
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < sendWorkers; i++) {
+            sendExecutor.execute(() -> sendLoop(sendQueue, recordQueue, sender, sendsDone));
+        }
+        // A thread of its own rather than a pooled one: this call waits on it, so it must never
+        // queue behind busy workers or other waiting callers for a slot
+        Thread.ofVirtual().name("send-record-" + name)
+                .start(() -> recordLoop(recordQueue, recorder, inFlight, sent, failed, recordDone));
+
+        try {
+            while (recipients.hasNext()) {
+                T recipient = recipients.next();
+                inFlight.acquire();
+                renderExecutor.execute(() -> render(recipient, renderer, sendQueue, recordQueue));
+            }
+            // Every permit is back once the last recipient has been recorded
+            inFlight.acquire(queueCapacity);
+        } finally {
+            for (int i = 0; i < sendWorkers; i++) {
+                sendQueue.put(Envelope.poison());
+            }
+            sendsDone.await();
+            recordQueue.put(Envelope.poison());
+            recordDone.await();
+        }
+
+        log.debug("Pipeline {} finished: sent={}, failed={}", name, sent.get(), failed.get());
+        return new Result(sent.get(), failed.get());
+    }
+
+    private <T> void render(T recipient, Renderer<T> renderer,
+                            BlockingQueue<Envelope<T>> sendQueue, BlockingQueue<Envelope<T>> recordQueue) {
+        try {
+            sendQueue.add(new Envelope<>(recipient, renderer.render(recipient), null));
+        } catch (Exception e) {
+            recordQueue.add(new Envelope<>(recipient, null, e));
+        }
+    }
+
+    private <T> void sendLoop(BlockingQueue<Envelope<T>> in, BlockingQueue<Envelope<T>> results,
+                              Sender sender, CountDownLatch done) {
+        try {
+            while (true) {
+                Envelope<T> envelope = in.take();
+                if (envelope.isPoison()) {
+                    return;
+                }
+                Exception error = null;
+                try {
+                    sender.send(envelope.message());
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    error = e;
+                }
+                results.put(new Envelope<>(envelope.recipient(), null, error));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private <T> void recordLoop(BlockingQueue<Envelope<T>> in, Recorder<T> recorder, Semaphore inFlight,
+                                AtomicInteger sent, AtomicInteger failed, CountDownLatch done) {
+        List<Envelope<T>> drained = new ArrayList<>(recordBatchSize);
+        try {
+            boolean finished = false;
+            while (!finished) {
+                drained.add(in.take());
+                in.drainTo(drained, recordBatchSize - 1);
+
+                List<Delivery<T>> batch = new ArrayList<>(drained.size());
+                for (Envelope<T> envelope : drained) {
+                    if (envelope.isPoison()) {
+                        finished = true;
+                    } else {
+                        batch.add(new Delivery<>(envelope.recipient(), envelope.error()));
+                    }
+                }
+                drained.clear();
+
+                if (!batch.isEmpty()) {
+                    flush(batch, recorder, sent, failed);
+                    inFlight.release(batch.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private <T> void flush(List<Delivery<T>> batch, Recorder<T> recorder, AtomicInteger sent, AtomicInteger failed) {
+        for (Delivery<T> delivery : batch) {
+            if (delivery.isSent()) {
+                sent.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+        try {
+            recorder.record(batch);
+        } catch (Exception e) {
+            log.error("Failed to record a batch of {} deliveries", batch.size(), e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Renderer<T> {
+        MimeMessage render(T recipient) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Sender {
+        void send(MimeMessage message) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Recorder<T> {
+        void record(List<Delivery<T>> deliveries);
+    }
+
+    public record Delivery<T>(T recipient, Exception error) {
+        public boolean isSent() {
+            return error == null;
+        }
+    }
+
+    public record Result(int sent, int failed) {
+    }
+
+    private record Envelope<T>(T recipient, MimeMessage message, Exception error) {
+        static <T> Envelope<T> poison() {
+            return new Envelope<>(null, null, null);
+        }
+
+        boolean isPoison() {
+            return recipient == null;
+        }
+    }
+}
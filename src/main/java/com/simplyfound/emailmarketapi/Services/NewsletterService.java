@@ -27,6 +27,7 @@ public class NewsletterService {
 
     private final NewsletterRepository newsletterRepository;
     private final SubscriberRepository subscriberRepository;
+    private final CounterService counters;
 
     @Value("${app.upload-dir:uploads}")
     private String uploadDir;
@@ -105,6 +106,11 @@ public class NewsletterService {
         Newsletter newsletter = newsletterRepository.findById(newsletterId)
                 .orElseThrow(() -> new RuntimeException("Newsletter not found"));
         
+        // A resend replaces the newsletter's previous recipient total
+        long previous = newsletter.getSentAt() != null && newsletter.getTotalRecipients() != null
+                ? newsletter.getTotalRecipients() : 0;
+        counters.emailsSentChanged(totalRecipients - previous);
+
         newsletter.setSentAt(LocalDateTime.now());
         newsletter.setTotalRecipients(totalRecipients);
         newsletterRepository.save(newsletter);
@@ -120,6 +126,9 @@ public class NewsletterService {
         if (newsletter.getMediaUrl() != null) {
             deleteMediaFile(newsletter.getMediaUrl());
         }
+        if (newsletter.getSentAt() != null && newsletter.getTotalRecipients() != null) {
+            counters.emailsSentChanged(-newsletter.getTotalRecipients());
+        }
 
         newsletterRepository.deleteById(id);
         log.info("Newsletter deleted with id: {}", id);
@@ -135,10 +144,7 @@ public class NewsletterService {
     }
 
     public long countSentEmails() {
-        return newsletterRepository.findAll().stream()
-                .filter(n -> n.getSentAt() != null)
-                .mapToLong(n -> n.getTotalRecipients() != null ? n.getTotalRecipients() : 0)
-                .sum();
+        return counters.getEmailsSent();
     }
 
     private String saveMediaFile(MultipartFile file) throws IOException {
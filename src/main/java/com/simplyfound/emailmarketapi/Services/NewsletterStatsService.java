@@ -0,0 +1,77 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.NewsletterStats;
+import com.simplyfound.emailmarketapi.Repositories.NewsletterStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reads and maintains the newsletter_stats aggregate. Deliveries are added in the same
+ * transaction as the outbox checkpoint; opens are added by the open-event flush statement.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NewsletterStatsService {
+
+    private final NewsletterStatsRepository statsRepository;
+
+    public NewsletterStats getStats(Long newsletterId) {
+        return statsRepository.findById(newsletterId).orElseGet(() -> {
+            NewsletterStats empty = new NewsletterStats();
+            empty.setNewsletterId(newsletterId);
+            return empty;
+        });
+    }
+
+    public long getTotalSent() {
+        return statsRepository.sumSent();
+    }
+
+    public long getTotalUniqueOpened() {
+        return statsRepository.sumUniqueOpened();
+    }
+
+    @Transactional
+    public void addDeliveries(Long newsletterId, long sent, long failed) {
+        if (sent > 0 || failed > 0) {
+            statsRepository.addDeliveries(newsletterId, sent, failed);
+        }
+    }
+
+    // First start with the aggregate: seed it from the analytics recorded so far
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialiseStats() {
+        if (statsRepository.count() == 0) {
+            rebuild(null);
+        }
+    }
+
+    // Recomputes one newsletter, or all of them when newsletterId is null
+    @Transactional
+    public int rebuild(Long newsletterId) {
+        statsRepository.lockForRebuild();
+        if (newsletterId == null) {
+            statsRepository.deleteStatsWithoutAnalytics();
+        }
+        int rebuilt = newsletterId == null
+                ? statsRepository.rebuildFromAnalytics(Long.MIN_VALUE, Long.MAX_VALUE)
+                : statsRepository.rebuildFromAnalytics(newsletterId, newsletterId + 1);
+        log.info("Rebuilt newsletter stats for {} newsletter(s)", rebuilt);
+        return rebuilt;
+    }
+
+    // Final rollup of a newsletter id range before its analytics partition is archived
+    @Transactional
+    public int rollUp(long fromId, long toId) {
+        statsRepository.lockForRebuild();
+        int rolledUp = statsRepository.rebuildFromAnalytics(fromId, toId);
+        statsRepository.markArchived(fromId, toId);
+        return rolledUp;
+    }
+}
@@ -0,0 +1,108 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A newsletter compiled into pre-encoded UTF-8 segments. Everything that is identical for all
+ * recipients is encoded once; rendering only splices the recipient's tracking token into the
+ * link slots.
+ */
+public final class NewsletterTemplate {
+
+    private final Long newsletterId;
+    private final String subject;
+    private final String[] parts;
+    private final byte[][] segments;
+    private final int invariantLength;
+
+    private NewsletterTemplate(Long newsletterId, String subject, List<String> parts) {
+        this.newsletterId = newsletterId;
+        this.subject = subject;
+        this.parts = parts.toArray(String[]::new);
+        this.segments = new byte[parts.size()][];
+        int length = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            segments[i] = parts.get(i).getBytes(StandardCharsets.UTF_8);
+            length += segments[i].length;
+        }
+        this.invariantLength = length;
+    }
+
+    public static Builder builder(Long newsletterId, String subject) {
+        return new Builder(newsletterId, subject);
+    }
+
+    public Long getNewsletterId() {
+        return newsletterId;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public int getInvariantLength() {
+        return invariantLength;
+    }
+
+    public void writeTo(OutputStream out, String trackingToken) throws IOException {
+        byte[] key = recipientKey(trackingToken);
+        out.write(segments[0]);
+        for (int i = 1; i < segments.length; i++) {
+            out.write(key);
+            out.write(segments[i]);
+        }
+    }
+
+    public String render(String trackingToken) {
+        // The UTF-8 length is at least the char length, so this never needs to grow
+        StringBuilder html = new StringBuilder(invariantLength + (parts.length - 1) * trackingToken.length());
+        html.append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            html.append(trackingToken).append(parts[i]);
+        }
+        return html.toString();
+    }
+
+    // Invariant UTF-8 segments; a recipient key goes between each consecutive pair
+    byte[][] segments() {
+        return segments;
+    }
+
+    // Tracking tokens are base64url, so they go into URLs as they are
+    static byte[] recipientKey(String trackingToken) {
+        return trackingToken.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static final class Builder {
+        private final Long newsletterId;
+        private final String subject;
+        private final List<String> parts = new ArrayList<>();
+        private StringBuilder current = new StringBuilder(8 * 1024);
+
+        private Builder(Long newsletterId, String subject) {
+            this.newsletterId = newsletterId;
+            this.subject = subject;
+        }
+
+        public Builder append(String text) {
+            current.append(text);
+            return this;
+        }
+
+        // Marks the position of the recipient's tracking token
+        public Builder recipientSlot() {
+            parts.add(current.toString());
+            current = new StringBuilder();
+            return this;
+        }
+
+        public NewsletterTemplate build() {
+            parts.add(current.toString());
+            return new NewsletterTemplate(newsletterId, subject, parts);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.Newsletter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a {@link Newsletter} into an immutable {@link NewsletterTemplate} once per send,
+ * leaving only the recipient-specific link slots to be filled per message. Links in the content
+ * are rewritten to tracked redirects at this point, so sending does no per-link work.
+ */
+@Service
+@RequiredArgsConstructor
+public class NewsletterTemplateService {
+
+    private static final Pattern CONTENT_LINK =
+            Pattern.compile("(<a\\s[^>]*?href\\s*=\\s*)([\"'])(https?://.*?)\\2", Pattern.CASE_INSENSITIVE);
+
+    private final NewsletterLinkService linkService;
+
+    @Value("${app.public-url:http://localhost:${server.port:8585}}")
+    private String publicUrl;
+
+    public NewsletterTemplate compile(Newsletter newsletter) {
+        return compile(newsletter, true);
+    }
+
+    // Leaves content links pointing at their targets, so previewing drafts registers no links
+    public NewsletterTemplate compilePreview(Newsletter newsletter) {
+        return compile(newsletter, false);
+    }
+
+    private NewsletterTemplate compile(Newsletter newsletter, boolean trackLinks) {
+        NewsletterTemplate.Builder html = NewsletterTemplate.builder(newsletter.getId(), newsletter.getTitle());
+        
+        html.append("<!DOCTYPE html>");
+        html.append("<html lang=\"en\">");
+        html.append("<head>");
+        html.append("<meta charset=\"UTF-8\">");
+        html.append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">");
+        html.append("<meta http-equiv=\"X-UA-Compatible\" content=\"IE=edge\">");
+        html.append("<title>").append(escapeHtml(newsletter.getTitle())).append("</title>");
+        html.append("<style>");
+        html.append("* { margin: 0; padding: 0; box-sizing: border-box; }");
+        html.append("body { margin: 0; padding: 0; font-family: -apple-system, BlinkMacSystemFont, 'Segoe UI', Roboto, 'Helvetica Neue', Arial, sans-serif; background-color: #f0f2f5; -webkit-font-smoothing: antialiased; -moz-osx-font-smoothing: grayscale; }");
+        html.append(".email-wrapper { background-color: #f0f2f5; padding: 30px 10px; }");
+        html.append(".email-container { max-width: 600px; margin: 0 auto; background-color: #ffffff; box-shadow: 0 4px 12px rgba(0,0,0,0.08); border-radius: 12px; overflow: hidden; }");
+        
+        // Header with #323e4a background
+        html.append(".header { background-color: #323e4a; padding: 35px 30px; text-align: center; }");
+        html.append(".logo-container { padding: 25px; display: inline-block; }");
+        html.append(".logo { max-width: 200px; height: auto; display: block; margin: 0 auto; }");
+        
+        // Title Section with gradient accent
+        html.append(".title-section { padding: 45px 35px 30px 35px; background: linear-gradient(to bottom, #ffffff 0%, #fafbff 100%); position: relative; }");
+        html.append(".title-section::before { content: ''; position: absolute; top: 0; left: 0; right: 0; height: 4px; background: linear-gradient(90deg, #667eea 0%, #764ba2 100%); }");
+        html.append(".title { font-size: 34px; font-weight: 700; color: #1a202c; margin-bottom: 12px; line-height: 1.2; letter-spacing: -0.8px; }");
+        html.append(".subtitle { font-size: 20px; color: #4a5568; font-weight: 400; line-height: 1.5; margin-top: 8px; }");
+        
+        // Image Section
+        html.append(".image-section { padding: 0; margin: 0; background-color: #ffffff; }");
+        html.append(".image-container { width: 100%; margin: 0; padding: 0; display: block; background-color: #f7fafc; }");
+        html.append(".image-container img { width: 100%; height: auto; display: block; margin: 0; border: none; }");
+        
+        // Content Section
+        html.append(".content-section { padding: 35px 35px 45px 35px; background-color: #ffffff; }");
+        html.append(".text-content { font-size: 16px; color: #2d3748; line-height: 1.8; margin: 0; }");
+        html.append(".text-content p { margin-bottom: 18px; }");
+        html.append(".text-content h1, .text-content h2, .text-content h3 { color: #1a202c; margin-top: 28px; margin-bottom: 14px; font-weight: 600; }");
+        html.append(".text-content h1 { font-size: 24px; }");
+        html.append(".text-content h2 { font-size: 22px; }");
+        html.append(".text-content h3 { font-size: 20px; }");
+        html.append(".text-content ul, .text-content ol { margin: 18px 0; padding-left: 28px; }");
+        html.append(".text-content li { margin-bottom: 10px; }");
+        html.append(".text-content a { color: #667eea; text-decoration: none; font-weight: 500; border-bottom: 1px solid rgba(102, 126, 234, 0.3); }");
+        html.append(".text-content a:hover { color: #764ba2; border-bottom-color: #764ba2; }");
+        html.append(".text-content blockquote { border-left: 4px solid #667eea; padding-left: 20px; margin: 20px 0; color: #4a5568; font-style: italic; }");
+        html.append(".text-content code { background-color: #f7fafc; padding: 2px 6px; border-radius: 4px; font-family: 'Courier New', monospace; font-size: 14px; }");
+        
+        // Footer with #323e4a background
+        html.append(".footer { background-color: #323e4a; padding: 35px 25px; text-align: center; }");
+        html.append(".company-info { font-size: 15px; color: #e2e8f0; margin-bottom: 24px; line-height: 1.7; }");
+        html.append(".company-info p { margin: 6px 0; }");
+        html.append(".company-info strong { color: #ffffff; font-weight: 600; font-size: 16px; }");
+        html.append(".company-info a { color: #93c5fd; text-decoration: none; }");
+        html.append(".company-info a:hover { color: #bfdbfe; text-decoration: underline; }");
+        html.append(".unsubscribe-btn { display: inline-block; padding: 14px 32px; background: linear-gradient(135deg, #dc3545 0%, #c82333 100%); color: #ffffff !important; text-decoration: none; border-radius: 8px; font-size: 14px; font-weight: 600; box-shadow: 0 4px 6px rgba(220, 53, 69, 0.25); transition: all 0.3s ease; }");
+        html.append(".unsubscribe-btn:hover { background: linear-gradient(135deg, #c82333 0%, #bd2130 100%); box-shadow: 0 6px 12px rgba(220, 53, 69, 0.35); transform: translateY(-1px); }");
+        
+        // Divider
+        html.append(".divider { height: 1px; background: linear-gradient(90deg, transparent, #e2e8f0, transparent); margin: 30px 0; }");
+        
+        // Responsive
+        html.append("@media only screen and (max-width: 600px) {");
+        html.append(".email-wrapper { padding: 15px 5px; }");
+        html.append(".email-container { width: 100% !important; border-radius: 0; }");
+        html.append(".header { padding: 25px 20px; }");
+        html.append(".logo-container { padding: 20px; }");
+        html.append(".logo { max-width: 160px; }");
+        html.append(".title-section { padding: 35px 25px 25px 25px; }");
+        html.append(".content-section { padding: 30px 25px 35px 25px; }");
+        html.append(".title { font-size: 28px; }");
+        html.append(".subtitle { font-size: 18px; }");
+        html.append(".text-content { font-size: 15px; }");
+        html.append(".footer { padding: 30px 20px; }");
+        html.append(".unsubscribe-btn { padding: 12px 24px; font-size: 13px; }");
+        html.append("}");
+        html.append("</style>");
+        html.append("</head>");
+        html.append("<body>");
+        html.append("<div class=\"email-wrapper\">");
+        html.append("<div class=\"email-container\">");
+        
+        // Header with Logo (white background for visibility)
+        html.append("<div class=\"header\">");
+        html.append("<div class=\"logo-container\">");
+        html.append("<img src=\"https://www.simplyfound.com.na/assets/logo-CtF7uxpB.png\" alt=\"Simply Found Logo\" class=\"logo\" />");
+        html.append("</div>");
+        html.append("</div>");
+        
+        // Title Section
+        html.append("<div class=\"title-section\">");
+        html.append("<h1 class=\"title\">").append(escapeHtml(newsletter.getTitle())).append("</h1>");
+        html.append("<h2 class=\"subtitle\">").append(escapeHtml(newsletter.getSubtitle())).append("</h2>");
+        html.append("</div>");
+        
+        // Image Section (after title and subtitle)
+        if (newsletter.getMediaUrl() != null && !newsletter.getMediaUrl().isEmpty() && 
+            newsletter.getMediaType() == Newsletter.MediaType.IMAGE) {
+            html.append("<div class=\"image-section\">");
+            html.append("<div class=\"image-container\">");
+            // Use the stored URL from database (already full URL)
+            html.append("<img src=\"").append(newsletter.getMediaUrl()).append("\" alt=\"").append(escapeHtml(newsletter.getTitle())).append("\" style=\"width: 100%; height: auto; display: block;\" />");
+            html.append("</div>");
+            html.append("</div>");
+        }
+        
+        // Content Section (after image)
+        html.append("<div class=\"content-section\">");
+        if (newsletter.getContent() != null && !newsletter.getContent().isEmpty()) {
+            html.append("<div class=\"text-content\">");
+            if (trackLinks) {
+                appendTrackedContent(html, newsletter.getId(), newsletter.getContent());
+            } else {
+                html.append(newsletter.getContent());
+            }
+            html.append("</div>");
+        }
+        
+        // Video (if video type, show after content)
+        if (newsletter.getMediaUrl() != null && !newsletter.getMediaUrl().isEmpty() && 
+            newsletter.getMediaType() == Newsletter.MediaType.VIDEO) {
+            html.append("<div style=\"margin-top: 30px; text-align: center; background-color: #f7fafc; padding: 20px; border-radius: 12px;\">");
+            html.append("<video controls style=\"max-width: 100%; height: auto; border-radius: 8px; box-shadow: 0 4px 8px rgba(0,0,0,0.1);\">");
+            html.append("<source src=\"").append(newsletter.getMediaUrl()).append("\" type=\"video/mp4\">");
+            html.append("Your browser does not support the video tag.");
+            html.append("</video>");
+            html.append("</div>");
+        }
+        html.append("</div>");
+        
+        // Divider
+        html.append("<div class=\"divider\"></div>");
+        
+        // Footer
+        html.append("<div class=\"footer\">");
+        html.append("<div class=\"company-info\">");
+        html.append("<p><strong>Simply Found</strong></p>");
+        html.append("<p>Email: <a href=\"mailto:info@simplyfound.com.na\">info@simplyfound.com.na</a></p>");
+        html.append("<p style=\"margin-top: 12px; font-size: 13px; color: #cbd5e0;\">Thank you for being part of our community!</p>");
+        html.append("</div>");
+        
+        html.append("<a href=\"").append(publicUrl).append("/api/subscribers/unsubscribe/")
+                .recipientSlot().append("\" class=\"unsubscribe-btn\">Unsubscribe</a>");
+        html.append("</div>");
+        
+        html.append("</div>");
+        html.append("</div>");
+        
+        // Tracking Pixel
+        html.append("<img src=\"").append(publicUrl).append("/api/t/")
+                .recipientSlot().append("\" width=\"1\" height=\"1\" style=\"display:none;\" />");
+        
+        html.append("</body>");
+        html.append("</html>");
+        
+        return html.build();
+    }
+
+    // Each http(s) link becomes publicUrl/api/r/{link code}/{recipient token}
+    private void appendTrackedContent(NewsletterTemplate.Builder html, Long newsletterId, String content) {
+        Map<String, String> codes = new HashMap<>();
+        Matcher matcher = CONTENT_LINK.matcher(content);
+        int last = 0;
+        while (matcher.find()) {
+            String url = matcher.group(3).replace("&amp;", "&");
+            if (!isRedirectable(url)) {
+                continue;
+            }
+            String code = codes.computeIfAbsent(url, target -> linkService.register(newsletterId, target));
+            html.append(content.substring(last, matcher.start()))
+                    .append(matcher.group(1)).append(matcher.group(2))
+                    .append(publicUrl).append("/api/r/").append(code).append("/")
+                    .recipientSlot().append(matcher.group(2));
+            last = matcher.end();
+        }
+        html.append(content.substring(last));
+    }
+
+    // Malformed URLs are left as they are; the redirect could not send the browser there anyway
+    private boolean isRedirectable(String url) {
+        try {
+            URI.create(url);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String escapeHtml(String text) {
+        if (text == null) return "";
+        return text.replace("&", "&amp;")
+                   .replace("<", "&lt;")
+                   .replace(">", "&gt;")
+                   .replace("\"", "&quot;")
+                   .replace("'", "&#39;");
+    }
+}
@@ -0,0 +1,287 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for tracking-pixel opens. A pixel hit only records the event in a
+ * concurrent map (repeat opens within a flush window collapse into one entry with a hit count);
+ * a background flusher writes the buffered opens, and their newsletter_stats increments, as
+ * batched set-based statements. Opens from tracking tokens are keyed by analytics id, and
+ * repeats the duplicate-open filter recognises are only counted per newsletter and minute;
+ * legacy pixel links are keyed by newsletter and recipient. Each map is drained on its own, and
+ * entries whose batch keeps failing (other than through an outage) are retried one at a time and
+ * dropped if they still fail.
+ */
+@Service
+@Slf4j
+public class OpenEventBuffer {
+
+    private final EmailAnalyticsJdbcRepository analyticsJdbcRepository;
+    private final TaskExecutor backgroundExecutor;
+    private final OpenHistogramService histograms;
+    private final DuplicateOpenFilter duplicateOpenFilter;
+
+    @Value("${app.tracking.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    // Buffered opens beyond this size trigger an early flush
+    @Value("${app.tracking.flush-threshold:10000}")
+    private int flushThreshold;
+
+    // Failed flushes of an entry before it is retried on its own, then dropped
+    @Value("${app.tracking.flush-max-attempts:5}")
+    private int maxAttempts;
+
+    private final Map<OpenId, PendingOpen> pendingById = new ConcurrentHashMap<>();
+    private final Map<OpenKey, PendingOpen> pendingByRecipient = new ConcurrentHashMap<>();
+    private final Map<RepeatKey, PendingOpen> pendingRepeats = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public OpenEventBuffer(EmailAnalyticsJdbcRepository analyticsJdbcRepository,
+                           @Qualifier("backgroundTaskExecutor") TaskExecutor backgroundExecutor,
+                           OpenHistogramService histograms,
+                           DuplicateOpenFilter duplicateOpenFilter) {
+        this.analyticsJdbcRepository = analyticsJdbcRepository;
+        this.backgroundExecutor = backgroundExecutor;
+        this.histograms = histograms;
+        this.duplicateOpenFilter = duplicateOpenFilter;
+    }
+
+    public void recordOpen(long newsletterId, long analyticsId) {
+        if (duplicateOpenFilter.markOpened(newsletterId, analyticsId)) {
+            pendingById.merge(new OpenId(newsletterId, analyticsId), PendingOpen.now(), PendingOpen::plus);
+        } else {
+            LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+            pendingRepeats.merge(new RepeatKey(newsletterId, minute), new PendingOpen(minute, 1), PendingOpen::plus);
+        }
+        flushIfFull();
+    }
+
+    public void recordOpen(Long newsletterId, String recipientEmail) {
+        pendingByRecipient.merge(new OpenKey(newsletterId, recipientEmail), PendingOpen.now(), PendingOpen::plus);
+        flushIfFull();
+    }
+
+    public int getPendingCount() {
+        return pendingById.size() + pendingByRecipient.size() + pendingRepeats.size();
+    }
+
+    private void flushIfFull() {
+        if (getPendingCount() >= flushThreshold && !flushLock.isLocked()) {
+            backgroundExecutor.execute(this::flush);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.tracking.flush-interval-ms:2000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            drainAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            drainAll();
+        } finally {
+            flushLock.unlock();
+        }
+        if (getPendingCount() > 0) {
+            log.warn("{} open events could not be written before shutdown", getPendingCount());
+        }
+    }
+
+    private void drainAll() {
+        drain(pendingById, this::writeById, "open events");
+        drain(pendingRepeats, this::writeRepeats, "buckets of repeat opens");
+        drain(pendingByRecipient, this::writeByRecipient, "legacy open events");
+    }
+
+    // Stops at the first failed batch; its entries stay buffered and are retried on the next flush
+    private <K> void drain(Map<K, PendingOpen> pending, BatchWriter<K> writer, String description) {
+        List<Map.Entry<K, PendingOpen>> batch = new ArrayList<>(flushBatchSize);
+        for (Map.Entry<K, PendingOpen> entry : pending.entrySet()) {
+            batch.add(Map.entry(entry.getKey(), entry.getValue()));
+            if (batch.size() == flushBatchSize) {
+                if (!writeAndRemove(pending, batch, writer, description)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeAndRemove(pending, batch, writer, description);
+        }
+    }
+
+    private <K> boolean writeAndRemove(Map<K, PendingOpen> pending, List<Map.Entry<K, PendingOpen>> batch,
+                                       BatchWriter<K> writer, String description) {
+        try {
+            writer.write(batch);
+        } catch (Exception e) {
+            log.error("Failed to flush {} {}", batch.size(), description, e);
+            if (isRetryable(e)) {
+                return false;
+            }
+            List<Map.Entry<K, PendingOpen>> exhausted = new ArrayList<>();
+            for (Map.Entry<K, PendingOpen> entry : batch) {
+                PendingOpen current = pending.computeIfPresent(entry.getKey(), (key, open) -> open.failed());
+                if (current != null && current.attempts() >= maxAttempts) {
+                    exhausted.add(entry);
+                }
+            }
+            if (!exhausted.isEmpty()) {
+                isolateFailures(pending, exhausted, writer, description);
+            }
+            return false;
+        }
+        log.debug("Flushed {} {}", batch.size(), description);
+        removeWritten(pending, batch);
+        return true;
+    }
+
+    // One bad entry must not hold the rest of its batch back forever: entries that have failed
+    // maxAttempts times are written on their own, and the ones that still fail are dropped
+    private <K> void isolateFailures(Map<K, PendingOpen> pending, List<Map.Entry<K, PendingOpen>> entries,
+                                     BatchWriter<K> writer, String description) {
+        int dropped = 0;
+        for (Map.Entry<K, PendingOpen> entry : entries) {
+            List<Map.Entry<K, PendingOpen>> single = List.of(entry);
+            try {
+                writer.write(single);
+                removeWritten(pending, single);
+            } catch (Exception e) {
+                if (isRetryable(e)) {
+                    continue;
+                }
+                pending.remove(entry.getKey());
+                if (entry.getKey() instanceof OpenId id) {
+                    // The row was marked opened in the filter when buffered but is still unopened
+                    duplicateOpenFilter.clearOpened(id.newsletterId(), id.analyticsId());
+                }
+                dropped++;
+                log.debug("Dropped {} entry {}: {}", description, entry.getKey(), e.getMessage());
+            }
+        }
+        if (dropped > 0) {
+            log.error("Dropped {} {} that failed {} flushes", dropped, description, maxAttempts);
+        }
+    }
+
+    // Outages and other transient errors are retried indefinitely; only failures that will recur
+    // count towards dropping an entry
+    static boolean isRetryable(Exception e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    // Hits that arrived while the batch was being written stay buffered for the next flush
+    private <K> void removeWritten(Map<K, PendingOpen> pending, List<Map.Entry<K, PendingOpen>> batch) {
+        for (Map.Entry<K, PendingOpen> entry : batch) {
+            pending.computeIfPresent(entry.getKey(), (key, current) -> current.minus(entry.getValue()));
+        }
+    }
+
+    private void writeById(List<Map.Entry<OpenId, PendingOpen>> batch) {
+        Long[] ids = new Long[batch.size()];
+        Long[] newsletterIds = new Long[batch.size()];
+        Timestamp[] openedAt = new Timestamp[batch.size()];
+        Integer[] hits = new Integer[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            ids[i] = batch.get(i).getKey().analyticsId();
+            newsletterIds[i] = batch.get(i).getKey().newsletterId();
+            openedAt[i] = Timestamp.valueOf(batch.get(i).getValue().firstOpenedAt());
+            hits[i] = batch.get(i).getValue().hits();
+        }
+        histograms.recordFlush(() -> analyticsJdbcRepository.recordOpensByIds(ids, newsletterIds, openedAt, hits));
+    }
+
+    private void writeRepeats(List<Map.Entry<RepeatKey, PendingOpen>> batch) {
+        Long[] newsletterIds = new Long[batch.size()];
+        Timestamp[] minutes = new Timestamp[batch.size()];
+        Long[] hits = new Long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            newsletterIds[i] = batch.get(i).getKey().newsletterId();
+            minutes[i] = Timestamp.valueOf(batch.get(i).getKey().minute());
+            hits[i] = (long) batch.get(i).getValue().hits();
+        }
+        histograms.recordFlush(() -> analyticsJdbcRepository.recordRepeatOpens(newsletterIds, minutes, hits));
+    }
+
+    private void writeByRecipient(List<Map.Entry<OpenKey, PendingOpen>> batch) {
+        Long[] newsletterIds = new Long[batch.size()];
+        String[] emails = new String[batch.size()];
+        Timestamp[] openedAt = new Timestamp[batch.size()];
+        Integer[] hits = new Integer[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            newsletterIds[i] = batch.get(i).getKey().newsletterId();
+            emails[i] = batch.get(i).getKey().recipientEmail();
+            openedAt[i] = Timestamp.valueOf(batch.get(i).getValue().firstOpenedAt());
+            hits[i] = batch.get(i).getValue().hits();
+        }
+        histograms.recordFlush(() -> analyticsJdbcRepository.recordOpensByRecipient(newsletterIds, emails, openedAt, hits));
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter<K> {
+        void write(List<Map.Entry<K, PendingOpen>> batch);
+    }
+
+    private record OpenId(long newsletterId, long analyticsId) {
+    }
+
+    private record OpenKey(Long newsletterId, String recipientEmail) {
+    }
+
+    private record RepeatKey(long newsletterId, LocalDateTime minute) {
+    }
+
+    // attempts counts failed flushes of the entry
+    private record PendingOpen(LocalDateTime firstOpenedAt, int hits, int attempts) {
+        PendingOpen(LocalDateTime firstOpenedAt, int hits) {
+            this(firstOpenedAt, hits, 0);
+        }
+
+        static PendingOpen now() {
+            return new PendingOpen(LocalDateTime.now(), 1);
+        }
+
+        PendingOpen plus(PendingOpen other) {
+            return new PendingOpen(firstOpenedAt, hits + other.hits, attempts);
+        }
+
+        PendingOpen failed() {
+            return new PendingOpen(firstOpenedAt, hits, attempts + 1);
+        }
+
+        // Null (entry removed) when nothing arrived beyond what was written
+        PendingOpen minus(PendingOpen written) {
+            return hits == written.hits ? null : new PendingOpen(firstOpenedAt, hits - written.hits, attempts);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.NewsletterOpenBucket;
+import com.simplyfound.emailmarketapi.Repositories.NewsletterOpenBucketRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Opens per newsletter in one-minute buckets, served from memory. The buckets are persisted in
+ * newsletter_open_buckets by the open-event flush; a newsletter's series is loaded once when it
+ * is first queried, kept current by every flush on this node, and reloaded after a TTL to pick
+ * up opens recorded by other nodes. Flushes report bucket totals rather than deltas, and counts
+ * only grow, so a bucket keeps the highest total seen and no lock is held across a database write.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OpenHistogramService {
+
+    private final NewsletterOpenBucketRepository bucketRepository;
+
+    @Value("${app.analytics.histogram-ttl-ms:60000}")
+    private long ttlMs;
+
+    // Series not queried for this long are dropped from memory
+    @Value("${app.analytics.histogram-idle-ms:1800000}")
+    private long idleMs;
+
+    private final Map<Long, Series> series = new ConcurrentHashMap<>();
+
+    public enum Resolution {
+        MINUTE(ChronoUnit.MINUTES), HOUR(ChronoUnit.HOURS), DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Resolution(ChronoUnit unit) {
+            this.unit = unit;
+        }
+    }
+
+    public record Bucket(LocalDateTime start, long opens, long uniqueOpens) {
+    }
+
+    // Runs a flush that returns the new totals of the buckets it wrote and applies them to the loaded
+    // series. A failed flush applies nothing; the open-event buffer keeps its batch for the next attempt.
+    public List<NewsletterOpenBucket> recordFlush(Supplier<List<NewsletterOpenBucket>> flush) {
+        List<NewsletterOpenBucket> totals = flush.get();
+        for (NewsletterOpenBucket bucket : totals) {
+            // computeIfPresent orders the update against a reload swapping in a new series
+            series.computeIfPresent(bucket.getNewsletterId(), (id, loaded) -> {
+                loaded.raise(bucket.getBucketStart(), bucket.getOpens(), bucket.getUniqueOpens());
+                return loaded;
+            });
+        }
+        return totals;
+    }
+
+    public List<Bucket> getHistogram(Long newsletterId, Resolution resolution, LocalDateTime from, LocalDateTime to) {
+        NavigableMap<LocalDateTime, long[]> minutes = load(newsletterId).minutes;
+        if (from != null || to != null) {
+            minutes = minutes.subMap(
+                    from != null ? from.truncatedTo(resolution.unit) : LocalDateTime.MIN, true,
+                    to != null ? to : LocalDateTime.MAX, false);
+        }
+
+        Map<LocalDateTime, long[]> grouped = new LinkedHashMap<>();
+        for (Map.Entry<LocalDateTime, long[]> minute : minutes.entrySet()) {
+            long[] counts = grouped.computeIfAbsent(minute.getKey().truncatedTo(resolution.unit), key -> new long[2]);
+            counts[0] += minute.getValue()[0];
+            counts[1] += minute.getValue()[1];
+        }
+
+        List<Bucket> buckets = new ArrayList<>(grouped.size());
+        grouped.forEach((start, counts) -> buckets.add(new Bucket(start, counts[0], counts[1])));
+        return buckets;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void seedBuckets() {
+        if (bucketRepository.count() == 0) {
+            int seeded = bucketRepository.seedFromAnalytics();
+            log.info("Seeded {} open histogram buckets from existing analytics", seeded);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.histogram-idle-ms:1800000}")
+    public void evictIdleSeries() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        series.values().removeIf(loaded -> loaded.lastQueried < cutoff);
+    }
+
+    private Series load(Long newsletterId) {
+        long now = System.currentTimeMillis();
+        Series cached = series.get(newsletterId);
+        if (cached != null && now - cached.loadedAt < ttlMs) {
+            cached.lastQueried = now;
+            return cached;
+        }
+
+        Series loaded = new Series(now);
+        for (NewsletterOpenBucket bucket : bucketRepository.findByNewsletterIdOrderByBucketStart(newsletterId)) {
+            loaded.raise(bucket.getBucketStart(), bucket.getOpens(), bucket.getUniqueOpens());
+        }
+        // Totals a flush applied to the previous series after this read started are kept
+        return series.merge(newsletterId, loaded, (previous, fresh) -> {
+            previous.minutes.forEach((minute, counts) -> fresh.raise(minute, counts[0], counts[1]));
+            return fresh;
+        });
+    }
+
+    private static final class Series {
+        // Minute start -> {opens, unique opens}; values are replaced, never mutated, so readers need no lock
+        final ConcurrentSkipListMap<LocalDateTime, long[]> minutes = new ConcurrentSkipListMap<>();
+        final long loadedAt;
+        volatile long lastQueried;
+
+        Series(long loadedAt) {
+            this.loadedAt = loadedAt;
+            this.lastQueried = loadedAt;
+        }
+
+        void raise(LocalDateTime minute, long opens, long uniqueOpens) {
+            minutes.merge(minute, new long[]{opens, uniqueOpens},
+                    (current, seen) -> new long[]{Math.max(current[0], seen[0]), Math.max(current[1], seen[1])});
+        }
+    }
+}
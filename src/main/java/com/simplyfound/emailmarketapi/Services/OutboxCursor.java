@@ -0,0 +1,63 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.OutboxEntry;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongPredicate;
+
+/**
+ * Iterates a send job's pending outbox rows in id order, one keyset page at a time. When the
+ * pending rows run out it enqueues the next page of subscribers, so sending starts straight
+ * away instead of waiting for the whole audience to be written. Rows matching skip (sent, but
+ * not yet recorded as such) are passed over.
+ */
+public class OutboxCursor implements Iterator<OutboxEntry> {
+
+    private final SendJobService sendJobService;
+    private final Long jobId;
+    private final Long newsletterId;
+    private final int pageSize;
+    private final LongPredicate skip;
+    private Iterator<OutboxEntry> current = Collections.emptyIterator();
+    private long lastId;
+    private boolean enqueueComplete;
+
+    public OutboxCursor(SendJobService sendJobService, Long jobId, Long newsletterId, int pageSize, LongPredicate skip) {
+        this.sendJobService = sendJobService;
+        this.jobId = jobId;
+        this.newsletterId = newsletterId;
+        this.pageSize = pageSize;
+        this.skip = skip;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (!sendJobService.holdsLease(jobId)) {
+                // Another node has taken the job over; stop feeding the pipeline
+                return false;
+            }
+            List<OutboxEntry> page = sendJobService.findPending(jobId, newsletterId, lastId, pageSize);
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).id();
+                current = page.stream().filter(entry -> !skip.test(entry.id())).iterator();
+            } else if (!enqueueComplete) {
+                enqueueComplete = sendJobService.enqueueNextPage(jobId, pageSize);
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public OutboxEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+}
@@ -0,0 +1,10 @@
+package com.simplyfound.emailmarketapi.Services;
+
+// A recipient on the suppression list; the outbox row is marked SUPPRESSED instead of being sent
+public class RecipientSuppressedException extends RuntimeException {
+
+    public RecipientSuppressedException(String email) {
+        // Thrown per suppressed recipient in a send, so no stack trace
+        super("Recipient " + email + " is suppressed", null, false, false);
+    }
+}
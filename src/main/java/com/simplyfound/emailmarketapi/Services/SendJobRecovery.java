@@ -0,0 +1,38 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.SendJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Picks up send jobs that are still running but whose lease has lapsed, i.e. jobs of a node
+// that crashed or was stopped, including this one before a restart
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SendJobRecovery {
+
+    private final JobLeaseService leaseService;
+    private final EmailService emailService;
+
+    @Value("${app.cluster.recovery-batch-size:10}")
+    private int recoveryBatchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        resumeOrphanedJobs();
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.lease-duration-ms:60000}",
+               initialDelayString = "${app.cluster.lease-duration-ms:60000}")
+    public void resumeOrphanedJobs() {
+        for (SendJob job : leaseService.claimOrphanedSendJobs(recoveryBatchSize)) {
+            log.info("Resuming send job {} for newsletter {}", job.getId(), job.getNewsletterId());
+            emailService.executeSendJob(job.getId());
+        }
+    }
+}
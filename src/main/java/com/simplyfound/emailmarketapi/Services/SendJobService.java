@@ -0,0 +1,168 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Models.EmailAnalytics;
+import com.simplyfound.emailmarketapi.Models.OutboxEntry;
+import com.simplyfound.emailmarketapi.Models.Recipient;
+import com.simplyfound.emailmarketapi.Models.ScheduledEmail;
+import com.simplyfound.emailmarketapi.Models.SendJob;
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsRepository;
+import com.simplyfound.emailmarketapi.Repositories.ScheduledEmailRepository;
+import com.simplyfound.emailmarketapi.Repositories.SendJobRepository;
+import com.simplyfound.emailmarketapi.Repositories.SubscriberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent state of newsletter sends. A job's recipients are written to the outbox
+ * (PENDING EmailAnalytics rows) page by page, and delivery results are checkpointed in
+ * batches, so an interrupted job can resume where it stopped.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SendJobService {
+
+    private final SendJobRepository sendJobRepository;
+    private final EmailAnalyticsRepository analyticsRepository;
+    private final SubscriberRepository subscriberRepository;
+    private final ScheduledEmailRepository scheduledEmailRepository;
+    private final NewsletterService newsletterService;
+    private final NewsletterStatsService statsService;
+    private final JobLeaseService leaseService;
+
+    // New jobs are leased to the node that creates them
+    @Transactional
+    public SendJob createJob(Long newsletterId) {
+        SendJob job = new SendJob();
+        job.setNewsletterId(newsletterId);
+        job.setLeaseOwner(leaseService.getNodeId());
+        job.setLeaseExpiresAt(leaseService.newLeaseExpiry());
+        SendJob saved = sendJobRepository.save(job);
+        leaseService.hold(saved.getId());
+        log.info("Created send job {} for newsletter {}", saved.getId(), newsletterId);
+        return saved;
+    }
+
+    // Creates the send job for a claimed scheduled email and marks the email sent in the same
+    // transaction, so the newsletter goes out exactly once even if this node dies right after
+    @Transactional
+    public SendJob createJobForScheduledEmail(ScheduledEmail claimed) {
+        SendJob job = createJob(claimed.getNewsletterId());
+        int marked = scheduledEmailRepository.markDispatched(claimed.getId(), job.getId(),
+                leaseService.getNodeId(), LocalDateTime.now());
+        if (marked == 0) {
+            leaseService.release(job.getId());
+            throw new RuntimeException("Lease on scheduled email " + claimed.getId() + " was lost");
+        }
+        return job;
+    }
+
+    public SendJob getJob(Long jobId) {
+        return sendJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Send job not found"));
+    }
+
+    public boolean holdsLease(Long jobId) {
+        return leaseService.holds(jobId);
+    }
+
+    public List<SendJob> getJobsForNewsletter(Long newsletterId) {
+        return sendJobRepository.findByNewsletterIdOrderByCreatedAtDesc(newsletterId);
+    }
+
+    // Writes the next page of active subscribers to the outbox and advances the checkpoint
+    // in the same transaction. Returns true once every subscriber has been enqueued.
+    @Transactional
+    public boolean enqueueNextPage(Long jobId, int pageSize) {
+        SendJob job = getJob(jobId);
+        if (job.getEnqueueComplete()) {
+            return true;
+        }
+
+        List<Recipient> page = subscriberRepository.findActiveRecipientsAfter(
+                job.getLastSubscriberId(), PageRequest.of(0, pageSize));
+
+        List<EmailAnalytics> outbox = new ArrayList<>(page.size());
+        for (Recipient recipient : page) {
+            EmailAnalytics row = new EmailAnalytics();
+            row.setNewsletterId(job.getNewsletterId());
+            row.setSendJobId(jobId);
+            row.setRecipientEmail(recipient.email());
+            row.setOpened(false);
+            row.setStatus(EmailAnalytics.DeliveryStatus.PENDING);
+            outbox.add(row);
+        }
+        analyticsRepository.saveAll(outbox);
+
+        if (!page.isEmpty()) {
+            job.setLastSubscriberId(page.get(page.size() - 1).id());
+        }
+        job.setEnqueueComplete(page.size() < pageSize);
+        job.setUpdatedAt(LocalDateTime.now());
+        sendJobRepository.save(job);
+        return job.getEnqueueComplete();
+    }
+
+    public List<OutboxEntry> findPending(Long jobId, Long newsletterId, Long afterId, int limit) {
+        return analyticsRepository.findOutboxEntries(newsletterId, jobId, EmailAnalytics.DeliveryStatus.PENDING,
+                afterId, PageRequest.of(0, limit));
+    }
+
+    @Transactional
+    public void recordDeliveries(Long jobId, Long newsletterId, List<Long> sentIds, List<Long> failedIds,
+                                 List<Long> suppressedIds) {
+        if (!sentIds.isEmpty()) {
+            analyticsRepository.updateStatus(newsletterId, sentIds, EmailAnalytics.DeliveryStatus.SENT);
+        }
+        if (!failedIds.isEmpty()) {
+            analyticsRepository.updateStatus(newsletterId, failedIds, EmailAnalytics.DeliveryStatus.FAILED);
+        }
+        if (!suppressedIds.isEmpty()) {
+            analyticsRepository.updateStatus(newsletterId, suppressedIds, EmailAnalytics.DeliveryStatus.SUPPRESSED);
+        }
+        sendJobRepository.addProgress(jobId, sentIds.size(), failedIds.size(), LocalDateTime.now());
+        statsService.addDeliveries(newsletterId, sentIds.size(), failedIds.size());
+    }
+
+    @Transactional
+    public SendJob completeJob(Long jobId) {
+        SendJob job = getJob(jobId);
+
+        // Anything still pending after the final pass is given up on
+        int abandoned = analyticsRepository.updateStatusForJob(job.getNewsletterId(), jobId,
+                EmailAnalytics.DeliveryStatus.PENDING, EmailAnalytics.DeliveryStatus.FAILED);
+        job.setFailedCount(job.getFailedCount() + abandoned);
+        statsService.addDeliveries(job.getNewsletterId(), 0, abandoned);
+        job.setStatus(SendJob.Status.COMPLETED);
+        job.setCompletedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCompletedAt());
+        clearLease(job);
+        sendJobRepository.save(job);
+
+        newsletterService.markAsSent(job.getNewsletterId(), job.getSentCount());
+        return job;
+    }
+
+    @Transactional
+    public void failJob(Long jobId) {
+        SendJob job = getJob(jobId);
+        job.setStatus(SendJob.Status.FAILED);
+        job.setUpdatedAt(LocalDateTime.now());
+        clearLease(job);
+        sendJobRepository.save(job);
+        log.warn("Send job {} marked as failed", jobId);
+    }
+
+    private void clearLease(SendJob job) {
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        leaseService.release(job.getId());
+    }
+}
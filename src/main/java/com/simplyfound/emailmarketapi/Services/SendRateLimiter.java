@@ -0,0 +1,205 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket rate control for outbound SMTP, globally and per recipient domain. Rates follow
+ * AIMD: every accepted message nudges the rate up, a throttling reply from the relay halves it.
+ * Buckets of domains not mailed for a while are dropped and start again from the initial rate.
+ */
+@Service
+@Slf4j
+public class SendRateLimiter {
+
+    // 421 service unavailable, 450/451/452 try again later. Other 4xx replies (e.g. a full
+    // mailbox) are about the recipient, not the sending rate.
+    private static final Set<Integer> THROTTLE_CODES = Set.of(421, 450, 451, 452);
+
+    @Value("${app.send.rate.initial:10}")
+    private double initialRate;
+
+    @Value("${app.send.rate.min:1}")
+    private double minRate;
+
+    @Value("${app.send.rate.max:100}")
+    private double maxRate;
+
+    // Messages per second added for each second of successful sending
+    @Value("${app.send.rate.increase:1}")
+    private double increase;
+
+    @Value("${app.send.rate.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    // Replies to messages already in flight when the relay pushes back count as a single signal
+    @Value("${app.send.rate.decrease-cooldown-ms:2000}")
+    private long decreaseCooldownMs;
+
+    @Value("${app.send.rate.domain-idle-ms:600000}")
+    private long domainIdleMs;
+
+    private final Map<String, AimdBucket> domains = new ConcurrentHashMap<>();
+    private final AtomicLong throttleEvents = new AtomicLong();
+    private volatile AimdBucket global;
+
+    public void acquire(String domain) throws InterruptedException {
+        bucket(domain).acquire();
+        globalBucket().acquire();
+    }
+
+    public void onSuccess(String domain) {
+        bucket(domain).increase();
+        globalBucket().increase();
+    }
+
+    public void onThrottled(String domain) {
+        throttleEvents.incrementAndGet();
+        AimdBucket bucket = bucket(domain);
+        if (bucket.decrease()) {
+            log.warn("Relay throttled mail to {}, rate lowered to {}/s", domain, String.format("%.2f", bucket.rate()));
+        }
+        globalBucket().decrease();
+    }
+
+    // The limit slowest domains, i.e. the ones the relay has pushed back on most
+    public Map<String, Object> getRates(int limit) {
+        Map<String, Double> domainRates = new LinkedHashMap<>();
+        domains.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), round(entry.getValue().rate())))
+                .sorted(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.<String, Double>comparingByKey()))
+                .limit(limit)
+                .forEach(entry -> domainRates.put(entry.getKey(), entry.getValue()));
+
+        Map<String, Object> rates = new LinkedHashMap<>();
+        rates.put("globalRate", round(globalBucket().rate()));
+        rates.put("minRate", minRate);
+        rates.put("maxRate", maxRate);
+        rates.put("throttleEvents", throttleEvents.get());
+        rates.put("domainCount", domains.size());
+        rates.put("domains", domainRates);
+        return rates;
+    }
+
+    @Scheduled(fixedDelayString = "${app.send.rate.domain-idle-ms:600000}")
+    public void evictIdleDomains() {
+        long cutoff = System.nanoTime() - domainIdleMs * 1_000_000;
+        int before = domains.size();
+        domains.values().removeIf(bucket -> bucket.lastUsedAt() - cutoff < 0);
+        if (domains.size() < before) {
+            log.debug("Evicted {} idle domain rate buckets", before - domains.size());
+        }
+    }
+
+    public static boolean isThrottled(Throwable error) {
+        return THROTTLE_CODES.contains(replyCode(error));
+    }
+
+    private static int replyCode(Throwable error) {
+        for (Throwable t = error; t != null; t = next(t)) {
+            if (t instanceof SMTPSendFailedException e && e.getReturnCode() > 0) {
+                return e.getReturnCode();
+            }
+            if (t instanceof SMTPAddressFailedException e && e.getReturnCode() > 0) {
+                return e.getReturnCode();
+            }
+            String message = t.getMessage();
+            if (message != null && message.matches("^[2-5]\\d\\d([ -].*)?$")) {
+                return Integer.parseInt(message.substring(0, 3));
+            }
+        }
+        return -1;
+    }
+
+    private static Throwable next(Throwable t) {
+        if (t instanceof MessagingException e && e.getNextException() != null) {
+            return e.getNextException();
+        }
+        return t.getCause() == t ? null : t.getCause();
+    }
+
+    private AimdBucket bucket(String domain) {
+        return domains.computeIfAbsent(domain == null ? "" : domain, d -> new AimdBucket(initialRate));
+    }
+
+    private AimdBucket globalBucket() {
+        AimdBucket bucket = global;
+        if (bucket == null) {
+            synchronized (this) {
+                if (global == null) {
+                    global = new AimdBucket(initialRate);
+                }
+                bucket = global;
+            }
+        }
+        return bucket;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private final class AimdBucket {
+        private double rate;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private long lastDecreaseAt;
+        private volatile long lastUsedAt = refilledAt;
+
+        private AimdBucket(double rate) {
+            this.rate = Math.max(minRate, Math.min(maxRate, rate));
+            this.tokens = 1;
+        }
+
+        private void acquire() throws InterruptedException {
+            lastUsedAt = System.nanoTime();
+            long waitNanos = reserve();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+
+        // Takes a token, going into debt if none is left; the caller sleeps off the debt
+        private synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, rate), tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+
+        private synchronized void increase() {
+            rate = Math.min(maxRate, rate + increase / rate);
+        }
+
+        private synchronized boolean decrease() {
+            long now = System.currentTimeMillis();
+            if (now - lastDecreaseAt < decreaseCooldownMs) {
+                return false;
+            }
+            lastDecreaseAt = now;
+            rate = Math.max(minRate, rate * decreaseFactor);
+            return true;
+        }
+
+        private long lastUsedAt() {
+            return lastUsedAt;
+        }
+
+        private synchronized double rate() {
+            return rate;
+        }
+    }
+}
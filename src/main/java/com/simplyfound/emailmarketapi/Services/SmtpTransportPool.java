@@ -0,0 +1,220 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of long-lived, authenticated SMTP sessions. Campaign sends borrow a
+ * connection instead of paying the connect/STARTTLS/AUTH handshake for every message.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SmtpTransportPool {
+
+    private final JavaMailSenderImpl mailSender;
+
+    @Value("${app.mail.pool.size:8}")
+    private int poolSize;
+
+    @Value("${app.mail.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${app.mail.pool.validate-after-idle-ms:5000}")
+    private long validateAfterIdleMs;
+
+    @Value("${app.mail.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${app.mail.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    // LIFO so the hottest connections are reused and cold ones age out
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private Semaphore permits;
+    private volatile boolean closed;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(poolSize, true);
+        log.info("SMTP transport pool ready: size={}, idleTimeout={}ms, maxMessagesPerConnection={}",
+                poolSize, idleTimeoutMs, maxMessagesPerConnection);
+    }
+
+    public void send(MimeMessage message) throws MessagingException {
+        message.saveChanges();
+        Address[] recipients = message.getAllRecipients();
+
+        PooledTransport pooled = borrow();
+        boolean healthy = false;
+        try {
+            try {
+                pooled.transport.sendMessage(message, recipients);
+            } catch (SendFailedException e) {
+                // The server answered, so the session may still be usable
+                healthy = pooled.transport.isConnected();
+                throw e;
+            } catch (MessagingException e) {
+                if (pooled.messagesSent == 0) {
+                    throw e;
+                }
+                // A reused session was dropped by the relay: reconnect and retry once
+                log.warn("Pooled SMTP connection failed after {} messages, reconnecting: {}",
+                        pooled.messagesSent, e.getMessage());
+                pooled.close();
+                pooled = connect();
+                pooled.transport.sendMessage(message, recipients);
+            }
+            pooled.messagesSent++;
+            healthy = true;
+        } finally {
+            release(pooled, healthy);
+        }
+    }
+
+    public Session getSession() {
+        return mailSender.getSession();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return poolSize - permits.availablePermits();
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.pool.eviction-interval-ms:30000}")
+    public void evictIdleConnections() {
+        List<PooledTransport> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (PooledTransport pooled : idle) {
+            if (now - pooled.lastUsedAt > idleTimeoutMs && idle.remove(pooled)) {
+                expired.add(pooled);
+            }
+        }
+        expired.forEach(PooledTransport::close);
+        if (!expired.isEmpty()) {
+            log.debug("Evicted {} idle SMTP connections", expired.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.close();
+        }
+        log.info("SMTP transport pool closed");
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Timed out waiting for a pooled SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for a pooled SMTP connection", e);
+        }
+
+        try {
+            PooledTransport pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                pooled.close();
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledTransport pooled) {
+        long idleFor = System.currentTimeMillis() - pooled.lastUsedAt;
+        if (idleFor > idleTimeoutMs) {
+            return false;
+        }
+        // Only pay for a NOOP round trip when the session has been quiet for a while
+        return idleFor < validateAfterIdleMs || pooled.transport.isConnected();
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(),
+                mailSender.getUsername(), mailSender.getPassword());
+        openConnections.incrementAndGet();
+        log.debug("Opened SMTP connection to {}:{}", mailSender.getHost(), mailSender.getPort());
+        return new PooledTransport(transport);
+    }
+
+    private void release(PooledTransport pooled, boolean healthy) {
+        try {
+            if (healthy && !closed && pooled.messagesSent < maxMessagesPerConnection) {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                pooled.close();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private class PooledTransport {
+        private final Transport transport;
+        private int messagesSent;
+        private long lastUsedAt = System.currentTimeMillis();
+        private boolean open = true;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error closing SMTP connection: {}", e.getMessage());
+            } finally {
+                openConnections.decrementAndGet();
+            }
+        }
+    }
+}
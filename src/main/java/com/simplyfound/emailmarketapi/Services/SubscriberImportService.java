@@ -0,0 +1,283 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simplyfound.emailmarketapi.Models.SubscriberImport;
+import com.simplyfound.emailmarketapi.Repositories.SubscriberJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk subscriber import. The upload is read line by line; chunks of lines are parsed and
+ * validated in parallel on the background pool and written in file order, one set-based upsert
+ * per chunk, so memory stays flat whatever the file size.
+ */
+@Service
+@Slf4j
+public class SubscriberImportService {
+
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final int MAX_EMAIL_LENGTH = 255;
+
+    private final SubscriberJdbcRepository subscriberJdbcRepository;
+    private final TaskExecutor backgroundExecutor;
+    private final ObjectMapper objectMapper;
+    private final SuppressionList suppressionList;
+    private final CounterService counters;
+
+    @Value("${app.subscribers.import.chunk-size:2000}")
+    private int chunkSize;
+
+    // Chunks parsed ahead of the writer
+    @Value("${app.subscribers.import.parallel-chunks:4}")
+    private int parallelChunks;
+
+    @Value("${app.subscribers.import.max-reported-rejects:1000}")
+    private int maxReportedRejects;
+
+    // Finished imports kept for the progress endpoint
+    @Value("${app.subscribers.import.retained:20}")
+    private int retainedImports;
+
+    private final Deque<SubscriberImport> imports = new ConcurrentLinkedDeque<>();
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    public SubscriberImportService(SubscriberJdbcRepository subscriberJdbcRepository,
+                                   @Qualifier("backgroundTaskExecutor") TaskExecutor backgroundExecutor,
+                                   ObjectMapper objectMapper,
+                                   SuppressionList suppressionList,
+                                   CounterService counters) {
+        this.subscriberJdbcRepository = subscriberJdbcRepository;
+        this.backgroundExecutor = backgroundExecutor;
+        this.objectMapper = objectMapper;
+        this.suppressionList = suppressionList;
+        this.counters = counters;
+    }
+
+    public List<SubscriberImport> getImports() {
+        return List.copyOf(imports);
+    }
+
+    public Optional<SubscriberImport> getImport(String id) {
+        return imports.stream().filter(progress -> progress.getId().equals(id)).findFirst();
+    }
+
+    public SubscriberImport importSubscribers(InputStream in, Format format) {
+        SubscriberImport progress = new SubscriberImport(UUID.randomUUID().toString(), format.name().toLowerCase());
+        register(progress);
+        log.info("Starting {} subscriber import {}", progress.getFormat(), progress.getId());
+
+        Deque<CompletableFuture<ParsedChunk>> parsing = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            int emailColumn = 0;
+            long lineNumber = 0;
+            long firstLine = 1;
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1) {
+                    line = stripBom(line);
+                    // A CSV header names the email column; without one the first column is used
+                    if (format == Format.CSV && !EMAIL.matcher(normalize(firstField(line))).matches()) {
+                        emailColumn = findEmailColumn(line);
+                        firstLine = 2;
+                        continue;
+                    }
+                }
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    submit(parsing, new Chunk(firstLine, lines), format, emailColumn, progress);
+                    firstLine = lineNumber + 1;
+                    lines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(parsing, new Chunk(firstLine, lines), format, emailColumn, progress);
+            }
+            while (!parsing.isEmpty()) {
+                write(parsing.poll().join(), progress);
+            }
+            progress.complete();
+            log.info("Subscriber import {} finished: {} rows, {} subscribed, {} resubscribed, {} rejected",
+                    progress.getId(), progress.getRowsProcessed(), progress.getSubscribed(),
+                    progress.getResubscribed(), progress.getRejected());
+        } catch (IOException | RuntimeException e) {
+            // Chunks written so far stay imported
+            parsing.forEach(future -> future.cancel(false));
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Subscriber import {} failed after {} rows", progress.getId(), progress.getRowsProcessed(), cause);
+            progress.fail(cause.getMessage());
+        }
+        return progress;
+    }
+
+    private void register(SubscriberImport progress) {
+        imports.addFirst(progress);
+        // Drop the oldest finished imports beyond the retention count; running ones are always kept
+        int finished = 0;
+        for (SubscriberImport existing : imports) {
+            if (existing.getStatus() != SubscriberImport.Status.RUNNING && ++finished > retainedImports) {
+                imports.remove(existing);
+            }
+        }
+    }
+
+    // Parsing runs ahead of the writer by at most parallelChunks chunks
+    private void submit(Deque<CompletableFuture<ParsedChunk>> parsing, Chunk chunk, Format format,
+                        int emailColumn, SubscriberImport progress) {
+        parsing.add(CompletableFuture.supplyAsync(() -> parse(chunk, format, emailColumn), backgroundExecutor));
+        if (parsing.size() >= parallelChunks) {
+            write(parsing.poll().join(), progress);
+        }
+    }
+
+    private ParsedChunk parse(Chunk chunk, Format format, int emailColumn) {
+        Set<String> emails = new LinkedHashSet<>(chunk.lines().size() * 2);
+        List<SubscriberImport.Reject> rejects = new ArrayList<>();
+        int rows = 0;
+        int duplicates = 0;
+        for (int i = 0; i < chunk.lines().size(); i++) {
+            String line = chunk.lines().get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            rows++;
+            long lineNumber = chunk.firstLine() + i;
+            String raw;
+            try {
+                raw = format == Format.CSV ? csvField(line, emailColumn) : ndjsonEmail(line);
+            } catch (IOException e) {
+                rejects.add(new SubscriberImport.Reject(lineNumber, line, "malformed JSON"));
+                continue;
+            }
+            String email = raw == null ? "" : normalize(raw);
+            if (email.isEmpty()) {
+                rejects.add(new SubscriberImport.Reject(lineNumber, line, "missing email"));
+            } else if (email.length() > MAX_EMAIL_LENGTH) {
+                rejects.add(new SubscriberImport.Reject(lineNumber, raw, "email longer than " + MAX_EMAIL_LENGTH + " characters"));
+            } else if (!EMAIL.matcher(email).matches()) {
+                rejects.add(new SubscriberImport.Reject(lineNumber, raw, "invalid email"));
+            } else if (!emails.add(email)) {
+                duplicates++;
+            }
+        }
+        return new ParsedChunk(rows, emails.toArray(String[]::new), rejects, duplicates);
+    }
+
+    private void write(ParsedChunk chunk, SubscriberImport progress) {
+        if (chunk.emails().length > 0) {
+            SubscriberJdbcRepository.SubscribeCounts counts = subscriberJdbcRepository.subscribeAll(chunk.emails());
+            progress.getSubscribed().addAndGet(counts.inserted());
+            counts.resubscribed().forEach(suppressionList::unsuppress);
+            counters.subscriberAdded(counts.inserted());
+            counters.subscribersResubscribed(counts.resubscribed().size());
+            progress.getResubscribed().addAndGet(counts.resubscribed().size());
+            progress.getAlreadySubscribed().addAndGet(
+                    chunk.emails().length - counts.inserted() - counts.resubscribed().size());
+        }
+        for (SubscriberImport.Reject reject : chunk.rejects()) {
+            if (progress.getRejects().size() < maxReportedRejects) {
+                progress.getRejects().add(reject);
+            }
+        }
+        progress.getRejected().addAndGet(chunk.rejects().size());
+        progress.getDuplicates().addAndGet(chunk.duplicates());
+        progress.getRowsProcessed().addAndGet(chunk.rows());
+    }
+
+    private String ndjsonEmail(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        if (node.isTextual()) {
+            return node.asText();
+        }
+        JsonNode email = node.get("email");
+        return email != null && email.isTextual() ? email.asText() : null;
+    }
+
+    private int findEmailColumn(String header) {
+        List<String> fields = splitCsv(header);
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).strip().equalsIgnoreCase("email")) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static String firstField(String line) {
+        return csvField(line, 0);
+    }
+
+    private static String csvField(String line, int column) {
+        List<String> fields = splitCsv(line);
+        return column < fields.size() ? fields.get(column) : null;
+    }
+
+    // RFC 4180 fields within one line; quoted fields spanning lines are not supported
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String normalize(String email) {
+        return email == null ? "" : SubscriberService.normalizeEmail(email);
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    private record Chunk(long firstLine, List<String> lines) {
+    }
+
+    private record ParsedChunk(int rows, String[] emails, List<SubscriberImport.Reject> rejects, int duplicates) {
+    }
+}
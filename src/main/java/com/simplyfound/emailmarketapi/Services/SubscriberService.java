@@ -1,14 +1,27 @@
 package com.simplyfound.emailmarketapi.Services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.simplyfound.emailmarketapi.Models.EmailAnalytics;
 import com.simplyfound.emailmarketapi.Models.Subscriber;
+import com.simplyfound.emailmarketapi.Models.SubscriberSummary;
+import com.simplyfound.emailmarketapi.Repositories.EmailAnalyticsRepository;
+import com.simplyfound.emailmarketapi.Repositories.SubscriberJdbcRepository;
 import com.simplyfound.emailmarketapi.Repositories.SubscriberRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -16,53 +29,105 @@ import java.util.List;
 public class SubscriberService {
 
     private final SubscriberRepository subscriberRepository;
+    private final EmailAnalyticsRepository analyticsRepository;
+    private final TrackingTokenService trackingTokens;
+    private final SubscriberJdbcRepository subscriberJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final SuppressionList suppressionList;
+    private final CounterService counters;
+
+    @Value("${app.subscribers.stream-fetch-size:1000}")
+    private int streamFetchSize;
+
+    public enum SubscribeOutcome {
+        SUBSCRIBED, RESUBSCRIBED, ALREADY_SUBSCRIBED
+    }
 
-    @Transactional
-    public Subscriber subscribe(String email) {
-        log.info("Attempting to subscribe email: {}", email);
-        
-        Subscriber existingSubscriber = subscriberRepository.findByEmail(email)
-                .orElse(null);
-
-        if (existingSubscriber != null) {
-            if (existingSubscriber.getSubscribed()) {
-                log.warn("Email {} is already subscribed", email);
-                throw new RuntimeException("Email is already subscribed");
-            } else {
-                // Resubscribe
-                existingSubscriber.setSubscribed(true);
-                existingSubscriber.setSubscribedAt(LocalDateTime.now());
-                existingSubscriber.setUnsubscribedAt(null);
-                log.info("Resubscribed email: {}", email);
-                return subscriberRepository.save(existingSubscriber);
-            }
+    // subscriber is null when the address was already subscribed
+    public record SubscribeResult(SubscribeOutcome outcome, SubscriberSummary subscriber) {
+    }
+
+    // One upsert: inserts a new address, resubscribes an unsubscribed one, leaves a subscribed one alone
+    public SubscribeResult subscribe(String email) {
+        String normalized = normalizeEmail(email);
+        return subscriberJdbcRepository.subscribe(normalized)
+                .map(row -> {
+                    suppressionList.unsuppress(normalized);
+                    if (row.inserted()) {
+                        counters.subscriberAdded(1);
+                    } else {
+                        counters.subscribersResubscribed(1);
+                    }
+                    log.info("{} email: {}", row.inserted() ? "Subscribed" : "Resubscribed", normalized);
+                    return new SubscribeResult(row.inserted() ? SubscribeOutcome.SUBSCRIBED : SubscribeOutcome.RESUBSCRIBED,
+                            row.subscriber());
+                })
+                .orElseGet(() -> {
+                    log.info("Email {} is already subscribed", normalized);
+                    return new SubscribeResult(SubscribeOutcome.ALREADY_SUBSCRIBED, null);
+                });
+    }
+
+    // Returns false if there is no such subscriber
+    public boolean unsubscribe(String email) {
+        String normalized = normalizeEmail(email);
+        Optional<SubscriberJdbcRepository.Unsubscribed> row = subscriberJdbcRepository.unsubscribe(normalized);
+        if (row.isEmpty()) {
+            return false;
+        }
+        suppressionList.suppress(normalized);
+        if (row.get().wasSubscribed()) {
+            counters.subscriberUnsubscribed();
         }
+        log.info("Unsubscribed email: {}", normalized);
+        return true;
+    }
 
-        Subscriber subscriber = new Subscriber();
-        subscriber.setEmail(email);
-        subscriber.setSubscribed(true);
-        subscriber.setSubscribedAt(LocalDateTime.now());
-        
-        log.info("Successfully subscribed email: {}", email);
-        return subscriberRepository.save(subscriber);
+    public static String normalizeEmail(String email) {
+        return email.strip().toLowerCase(Locale.ROOT);
     }
 
-    @Transactional
-    public void unsubscribe(String email) {
-        log.info("Attempting to unsubscribe email: {}", email);
-        
-        Subscriber subscriber = subscriberRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Subscriber not found"));
-
-        subscriber.setSubscribed(false);
-        subscriber.setUnsubscribedAt(LocalDateTime.now());
-        
-        subscriberRepository.save(subscriber);
-        log.info("Successfully unsubscribed email: {}", email);
+    // Unsubscribe link from a sent newsletter; the token identifies the analytics row of that email
+    // Returns false if the link no longer identifies a recipient (a rotated key, or an archived
+    // analytics row); the caller then asks for the email address instead
+    public boolean unsubscribeByToken(String token) {
+        Optional<EmailAnalytics> analytics = trackingTokens.verify(token)
+                .flatMap(claims -> analyticsRepository.findByIdAndNewsletterId(claims.analyticsId(), claims.newsletterId()));
+        if (analytics.isEmpty()) {
+            log.warn("Unsubscribe link could not be resolved to a recipient");
+            return false;
+        }
+        if (!unsubscribe(analytics.get().getRecipientEmail())) {
+            throw new RuntimeException("Subscriber not found");
+        }
+        return true;
     }
 
-    public List<Subscriber> getAllSubscribers() {
-        return subscriberRepository.findAll();
+    public List<SubscriberSummary> getSubscriberPage(long afterId, Boolean subscribed, String emailPrefix, int limit) {
+        return subscriberJdbcRepository.findPage(afterId, subscribed, emailPrefix, limit);
+    }
+
+    // Writes every matching subscriber as one JSON array straight from a database cursor
+    @Transactional(readOnly = true)
+    public void streamSubscribers(Boolean subscribed, String emailPrefix, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        // Rows go out as the generator's buffer fills, not one flushed chunk per row
+        ObjectWriter rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        json.writeStartArray();
+        try {
+            subscriberJdbcRepository.streamSubscribers(subscribed, emailPrefix, streamFetchSize, row -> {
+                try {
+                    rowWriter.writeValue(json, row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Usually the client went away mid-download
+            throw e.getCause();
+        }
+        json.writeEndArray();
+        json.flush();
     }
 
     public List<Subscriber> getActiveSubscribers() {
@@ -70,16 +135,16 @@ public class SubscriberService {
     }
 
     public long countSubscribers() {
-        return subscriberRepository.countBySubscribedTrue();
+        return counters.getSubscribed();
     }
 
     public long countUnsubscribed() {
-        return subscriberRepository.countBySubscribedFalse();
+        return counters.getUnsubscribed();
     }
 
     @Transactional
     public void deleteSubscriber(Long id) {
-        subscriberRepository.deleteById(id);
+        subscriberJdbcRepository.delete(id).ifPresent(counters::subscriberDeleted);
         log.info("Deleted subscriber with id: {}", id);
     }
 }
@@ -0,0 +1,118 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import com.simplyfound.emailmarketapi.Repositories.SubscriberJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory index of addresses that must not be mailed (unsubscribed subscribers), held as
+ * 64-bit fingerprints of the normalised address. It is loaded at startup, updated as addresses
+ * unsubscribe or resubscribe on this node and reloaded periodically to pick up changes made on
+ * other nodes. The send pipeline checks it for every recipient, so an unsubscribe during a send
+ * applies to the rest of that send.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SuppressionList {
+
+    private final SubscriberJdbcRepository subscriberJdbcRepository;
+
+    private volatile FingerprintSet suppressed = new FingerprintSet(0);
+
+    // Guards the swap on reload; changes made while a reload runs are replayed onto the new set
+    private final Object reloadMonitor = new Object();
+    private List<Change> changesDuringReload;
+
+    public boolean isSuppressed(String email) {
+        return suppressed.contains(fingerprint(SubscriberService.normalizeEmail(email)));
+    }
+
+    public void suppress(String email) {
+        apply(new Change(fingerprint(SubscriberService.normalizeEmail(email)), true));
+    }
+
+    public void unsuppress(String email) {
+        apply(new Change(fingerprint(SubscriberService.normalizeEmail(email)), false));
+    }
+
+    public int size() {
+        return suppressed.size();
+    }
+
+    // Loaded before send job recovery resumes any sends
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.suppression.reload-interval-ms:300000}",
+               initialDelayString = "${app.suppression.reload-interval-ms:300000}")
+    public void reload() {
+        synchronized (reloadMonitor) {
+            if (changesDuringReload != null) {
+                return;
+            }
+            changesDuringReload = new ArrayList<>();
+        }
+        try {
+            FingerprintSet loaded = new FingerprintSet(suppressed.size());
+            subscriberJdbcRepository.forEachUnsubscribedEmail(email -> loaded.add(fingerprint(email)));
+            synchronized (reloadMonitor) {
+                changesDuringReload.forEach(change -> change.applyTo(loaded));
+                suppressed = loaded;
+            }
+            log.info("Loaded {} suppressed addresses ({} KB)", loaded.size(), loaded.memoryBytes() / 1024);
+        } catch (Exception e) {
+            log.error("Failed to reload the suppression list; keeping the current one", e);
+        } finally {
+            synchronized (reloadMonitor) {
+                changesDuringReload = null;
+            }
+        }
+    }
+
+    private void apply(Change change) {
+        synchronized (reloadMonitor) {
+            change.applyTo(suppressed);
+            if (changesDuringReload != null) {
+                changesDuringReload.add(change);
+            }
+        }
+    }
+
+    // FNV-1a over the address's chars with a murmur3 finaliser; 0 marks an empty slot in the set
+    static long fingerprint(String normalizedEmail) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalizedEmail.length(); i++) {
+            hash ^= normalizedEmail.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    private record Change(long fingerprint, boolean suppress) {
+        void applyTo(FingerprintSet set) {
+            if (suppress) {
+                set.add(fingerprint);
+            } else {
+                set.remove(fingerprint);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.simplyfound.emailmarketapi.Services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Signed tracking tokens for the per-recipient links of a sent newsletter. A token is the
+ * newsletter id and the EmailAnalytics id as varints followed by a truncated HMAC-SHA256,
+ * base64url encoded (around 22 characters), so a hit can be verified and attributed to its
+ * analytics row without a database read. Without a configured secret the key is generated once
+ * and kept in app_secrets, so links in delivered mail keep working after restarts and on every node.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrackingTokenService {
+
+    private static final String KEY_NAME = "tracking-token-key";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 8;
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.tracking.secret:}")
+    private String secret;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> macs;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = secret.isBlank() ? storedKey() : secret.getBytes(StandardCharsets.UTF_8);
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+        macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    // The first node to start stores a random key; every node reads back whichever key won
+    private byte[] storedKey() {
+        byte[] generated = new byte[32];
+        new SecureRandom().nextBytes(generated);
+        if (jdbcTemplate.update("INSERT INTO app_secrets (name, value) VALUES (?, ?) ON CONFLICT (name) DO NOTHING",
+                KEY_NAME, generated) > 0) {
+            log.info("app.tracking.secret is not set; generated a tracking key and stored it in app_secrets");
+        }
+        return jdbcTemplate.queryForObject("SELECT value FROM app_secrets WHERE name = ?", byte[].class, KEY_NAME);
+    }
+
+    public String issue(long newsletterId, long analyticsId) {
+        byte[] buffer = new byte[20 + MAC_LENGTH];
+        int length = writeVarint(buffer, 0, newsletterId);
+        length = writeVarint(buffer, length, analyticsId);
+        System.arraycopy(sign(buffer, length), 0, buffer, length, MAC_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buffer, length + MAC_LENGTH));
+    }
+
+    public Optional<Claims> verify(String token) {
+        if (token == null || token.length() > MAX_TOKEN_LENGTH) {
+            return Optional.empty();
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        long[] values = new long[2];
+        int position = 0;
+        for (int i = 0; i < values.length; i++) {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= bytes.length - MAC_LENGTH || shift > 56) {
+                    return Optional.empty();
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+                shift += 7;
+            }
+            values[i] = value;
+        }
+        if (position != bytes.length - MAC_LENGTH) {
+            return Optional.empty();
+        }
+
+        byte[] expected = Arrays.copyOf(sign(bytes, position), MAC_LENGTH);
+        byte[] actual = Arrays.copyOfRange(bytes, position, bytes.length);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Claims(values[0], values[1]));
+    }
+
+    private byte[] sign(byte[] payload, int length) {
+        Mac mac = macs.get();
+        mac.update(payload, 0, length);
+        return mac.doFinal();
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+        }
+    }
+
+    private static int writeVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    public record Claims(long newsletterId, long analyticsId) {
+    }
+}
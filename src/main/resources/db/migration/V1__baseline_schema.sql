@@ -0,0 +1,100 @@
+-- Schema as previously created by hibernate.ddl-auto=update. Every statement is idempotent so this
+-- also runs against databases created that way (Flyway baselines them at version 0).
+
+CREATE TABLE IF NOT EXISTS users (
+    id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email      varchar(255) NOT NULL UNIQUE,
+    password   varchar(255) NOT NULL,
+    created_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS subscribers (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email           varchar(255) NOT NULL UNIQUE,
+    subscribed      boolean      NOT NULL,
+    subscribed_at   timestamp(6),
+    unsubscribed_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS newsletters (
+    id               bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title            varchar(255) NOT NULL,
+    subtitle         varchar(255) NOT NULL,
+    content          text,
+    media_url        varchar(255),
+    media_type       varchar(255),
+    created_at       timestamp(6),
+    sent_at          timestamp(6),
+    total_recipients integer
+);
+
+CREATE TABLE IF NOT EXISTS scheduled_emails (
+    id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    newsletter_id bigint       NOT NULL,
+    scheduled_at  timestamp(6) NOT NULL,
+    sent          boolean      NOT NULL,
+    sent_at       timestamp(6),
+    created_at    timestamp(6)
+);
+
+ALTER TABLE scheduled_emails ADD COLUMN IF NOT EXISTS send_job_id bigint;
+ALTER TABLE scheduled_emails ADD COLUMN IF NOT EXISTS lease_owner varchar(255);
+ALTER TABLE scheduled_emails ADD COLUMN IF NOT EXISTS lease_expires_at timestamp(6);
+
+-- Ids come from email_analytics_seq in blocks of 200; older databases also have an identity default
+CREATE TABLE IF NOT EXISTS email_analytics (
+    id              bigint       PRIMARY KEY,
+    newsletter_id   bigint       NOT NULL,
+    recipient_email varchar(255) NOT NULL,
+    opened          boolean      NOT NULL,
+    opened_at       timestamp(6)
+);
+
+ALTER TABLE email_analytics ADD COLUMN IF NOT EXISTS send_job_id bigint;
+ALTER TABLE email_analytics ADD COLUMN IF NOT EXISTS status varchar(16) DEFAULT 'SENT';
+ALTER TABLE email_analytics ADD COLUMN IF NOT EXISTS open_count integer NOT NULL DEFAULT 0;
+
+-- Rows written before delivery status was tracked were all sent
+UPDATE email_analytics SET status = 'SENT' WHERE status IS NULL;
+ALTER TABLE email_analytics ALTER COLUMN status SET DEFAULT 'SENT';
+ALTER TABLE email_analytics ALTER COLUMN status SET NOT NULL;
+
+CREATE SEQUENCE IF NOT EXISTS email_analytics_seq START WITH 1 INCREMENT BY 200;
+
+-- Move the sequence past ids handed out by the old identity column
+SELECT setval('email_analytics_seq',
+              GREATEST((SELECT COALESCE(MAX(id), 0) FROM email_analytics) + 200,
+                       (SELECT last_value FROM email_analytics_seq)));
+
+CREATE TABLE IF NOT EXISTS send_jobs (
+    id                 bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    newsletter_id      bigint       NOT NULL,
+    status             varchar(255) NOT NULL,
+    last_subscriber_id bigint       NOT NULL,
+    enqueue_complete   boolean      NOT NULL,
+    sent_count         integer      NOT NULL,
+    failed_count       integer      NOT NULL,
+    created_at         timestamp(6),
+    updated_at         timestamp(6),
+    completed_at       timestamp(6)
+);
+
+ALTER TABLE send_jobs ADD COLUMN IF NOT EXISTS lease_owner varchar(255);
+ALTER TABLE send_jobs ADD COLUMN IF NOT EXISTS lease_expires_at timestamp(6);
+
+CREATE TABLE IF NOT EXISTS newsletter_stats (
+    newsletter_id bigint PRIMARY KEY,
+    sent          bigint NOT NULL DEFAULT 0,
+    failed        bigint NOT NULL DEFAULT 0,
+    opened        bigint NOT NULL DEFAULT 0,
+    unique_opened bigint NOT NULL DEFAULT 0,
+    updated_at    timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS newsletter_open_buckets (
+    newsletter_id bigint       NOT NULL,
+    bucket_start  timestamp(6) NOT NULL,
+    opens         bigint       NOT NULL DEFAULT 0,
+    unique_opens  bigint       NOT NULL DEFAULT 0,
+    PRIMARY KEY (newsletter_id, bucket_start)
+);
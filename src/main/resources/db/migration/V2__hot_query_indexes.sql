@@ -0,0 +1,38 @@
+-- Indexes for the predicates of the repository queries
+
+-- EmailAnalyticsRepository.findByNewsletterIdAndRecipientEmail and the legacy pixel flush
+CREATE INDEX IF NOT EXISTS idx_email_analytics_newsletter_recipient
+    ON email_analytics (newsletter_id, recipient_email);
+
+-- Per-newsletter keyset drill-down and export (newsletter_id = ? ORDER BY id), counts and stats rebuilds
+CREATE INDEX IF NOT EXISTS idx_email_analytics_newsletter_id
+    ON email_analytics (newsletter_id, id);
+
+-- Outbox cursor and job completion: findOutboxEntries / updateStatusForJob
+CREATE INDEX IF NOT EXISTS idx_email_analytics_job_status
+    ON email_analytics (send_job_id, status, id)
+    WHERE send_job_id IS NOT NULL;
+
+-- Pending scheduled emails: findBySentFalseOrderByScheduledAtAsc and the lease claims
+CREATE INDEX IF NOT EXISTS idx_scheduled_emails_pending
+    ON scheduled_emails (scheduled_at)
+    WHERE sent = false;
+
+CREATE INDEX IF NOT EXISTS idx_scheduled_emails_newsletter
+    ON scheduled_emails (newsletter_id);
+
+-- Active audience: findActiveRecipientsAfter (keyset by id), findBySubscribedTrue, countBySubscribedTrue
+CREATE INDEX IF NOT EXISTS idx_subscribers_active
+    ON subscribers (id)
+    WHERE subscribed = true;
+
+-- Orphaned-job recovery only looks at running jobs
+CREATE INDEX IF NOT EXISTS idx_send_jobs_running
+    ON send_jobs (lease_expires_at)
+    WHERE status = 'RUNNING';
+
+CREATE INDEX IF NOT EXISTS idx_send_jobs_newsletter
+    ON send_jobs (newsletter_id, created_at);
+
+CREATE INDEX IF NOT EXISTS idx_newsletters_created_at
+    ON newsletters (created_at);
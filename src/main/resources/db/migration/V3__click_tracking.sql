@@ -0,0 +1,21 @@
+-- Links rewritten for click tracking, one row per distinct URL in a newsletter
+CREATE TABLE newsletter_links (
+    id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    newsletter_id bigint NOT NULL,
+    url           text   NOT NULL,
+    click_count   bigint NOT NULL DEFAULT 0,
+    created_at    timestamp(6),
+    UNIQUE (newsletter_id, url)
+);
+
+-- One row per click; analytics_id is null when the recipient token did not verify
+CREATE TABLE email_clicks (
+    id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    newsletter_id bigint       NOT NULL,
+    link_id       bigint       NOT NULL,
+    analytics_id  bigint,
+    clicked_at    timestamp(6) NOT NULL
+);
+
+CREATE INDEX idx_email_clicks_newsletter ON email_clicks (newsletter_id, link_id);
+CREATE INDEX idx_email_clicks_analytics ON email_clicks (analytics_id) WHERE analytics_id IS NOT NULL;
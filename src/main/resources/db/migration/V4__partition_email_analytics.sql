@@ -0,0 +1,66 @@
+-- email_analytics becomes a table partitioned by newsletter id range (app.analytics.partition.width
+-- newsletters per partition, passed in as a Flyway placeholder). Every read filters on newsletter_id, so a campaign's queries only touch its own
+-- partition, and old partitions can be rolled up into newsletter_stats and detached.
+-- AnalyticsPartitionService creates partitions ahead of new newsletters; the default partition
+-- only catches rows if it falls behind.
+
+ALTER TABLE email_analytics RENAME TO email_analytics_unpartitioned;
+
+CREATE TABLE email_analytics (
+    id              bigint       NOT NULL,
+    newsletter_id   bigint       NOT NULL,
+    recipient_email varchar(255) NOT NULL,
+    opened          boolean      NOT NULL,
+    opened_at       timestamp(6),
+    send_job_id     bigint,
+    status          varchar(16)  NOT NULL DEFAULT 'SENT',
+    open_count      integer      NOT NULL DEFAULT 0,
+    PRIMARY KEY (newsletter_id, id)
+) PARTITION BY RANGE (newsletter_id);
+
+CREATE TABLE email_analytics_default PARTITION OF email_analytics DEFAULT;
+
+DO $$
+DECLARE
+    width       CONSTANT bigint := ${analytics-partition-width};
+    lower_bound bigint := 0;
+    upper_bound bigint;
+BEGIN
+    SELECT (GREATEST((SELECT COALESCE(MAX(newsletter_id), 0) FROM email_analytics_unpartitioned),
+                     (SELECT COALESCE(MAX(id), 0) FROM newsletters)) / width + 2) * width
+    INTO upper_bound;
+    WHILE lower_bound < upper_bound LOOP
+        EXECUTE format('CREATE TABLE email_analytics_p%s PARTITION OF email_analytics FOR VALUES FROM (%s) TO (%s)',
+                       lower_bound, lower_bound, lower_bound + width);
+        lower_bound := lower_bound + width;
+    END LOOP;
+END $$;
+
+INSERT INTO email_analytics (id, newsletter_id, recipient_email, opened, opened_at, send_job_id, status, open_count)
+SELECT id, newsletter_id, recipient_email, opened, opened_at, send_job_id, status, open_count
+FROM email_analytics_unpartitioned;
+
+DROP TABLE email_analytics_unpartitioned;
+
+-- The primary key (newsletter_id, id) serves the per-newsletter keyset scans
+CREATE INDEX idx_email_analytics_newsletter_recipient
+    ON email_analytics (newsletter_id, recipient_email);
+
+CREATE INDEX idx_email_analytics_job_status
+    ON email_analytics (send_job_id, status, id)
+    WHERE send_job_id IS NOT NULL;
+
+-- Newsletters whose analytics rows were archived keep their rolled-up totals
+ALTER TABLE newsletter_stats ADD COLUMN archived_at timestamp(6);
+
+CREATE SCHEMA IF NOT EXISTS analytics_archive;
+
+-- Partitions detached by the maintenance job, moved to the analytics_archive schema
+CREATE TABLE email_analytics_archives (
+    partition_name     varchar(63) PRIMARY KEY,
+    newsletter_id_from bigint       NOT NULL,
+    newsletter_id_to   bigint       NOT NULL,
+    row_count          bigint       NOT NULL,
+    archived_at        timestamp(6) NOT NULL,
+    dropped            boolean      NOT NULL DEFAULT false
+);
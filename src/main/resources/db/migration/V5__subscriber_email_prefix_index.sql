@@ -0,0 +1,3 @@
+-- Email prefix search in the subscriber list: lower(email) LIKE 'prefix%'
+CREATE INDEX IF NOT EXISTS idx_subscribers_email_prefix
+    ON subscribers (lower(email) text_pattern_ops);
@@ -0,0 +1,36 @@
+-- Subscriber emails are stored trimmed and lower-cased and are unique case-insensitively, so
+-- subscribe and unsubscribe can be single ON CONFLICT / UPDATE statements on lower(email).
+
+-- Addresses that differ only in case or surrounding spaces collapse into one row, keeping a
+-- subscribed row over an unsubscribed one and otherwise the oldest
+DELETE FROM subscribers s
+USING (
+    SELECT id, row_number() OVER (PARTITION BY lower(btrim(email)) ORDER BY subscribed DESC, id) AS rank
+    FROM subscribers
+) ranked
+WHERE s.id = ranked.id AND ranked.rank > 1;
+
+UPDATE subscribers SET email = lower(btrim(email)) WHERE email <> lower(btrim(email));
+
+-- Replaces the prefix search index: text_pattern_ops serves both equality and LIKE 'prefix%'
+DROP INDEX IF EXISTS idx_subscribers_email_prefix;
+CREATE UNIQUE INDEX idx_subscribers_email_lower
+    ON subscribers (lower(email) text_pattern_ops);
+
+-- The upserts arbitrate on idx_subscribers_email_lower only, so the original unique constraint on
+-- email would still raise duplicate-key errors under concurrent subscribes. Its name depends on
+-- whether V1 or hibernate created it.
+DO $$
+DECLARE
+    constraint_name text;
+BEGIN
+    FOR constraint_name IN
+        SELECT c.conname
+        FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = ANY (c.conkey)
+        WHERE c.conrelid = 'subscribers'::regclass AND c.contype = 'u'
+          AND array_length(c.conkey, 1) = 1 AND a.attname = 'email'
+    LOOP
+        EXECUTE format('ALTER TABLE subscribers DROP CONSTRAINT %I', constraint_name);
+    END LOOP;
+END $$;
@@ -0,0 +1,7 @@
+-- Keys the application generates once and then shares between nodes and restarts, e.g. the
+-- tracking-token key when app.tracking.secret is not configured
+CREATE TABLE app_secrets (
+    name       varchar(64)  PRIMARY KEY,
+    value      bytea        NOT NULL,
+    created_at timestamp(6) NOT NULL DEFAULT now()
+);